@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.search.FilmIndexes;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    public static final long HOT_FILM_ID = 1;
+    public static final long HUB_USER_ID = 1;
+    public static final long OTHER_HUB_USER_ID = 2;
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int FRIENDS_PER_USER = 2;
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final String[] SYLLABLES = {"ма", "три", "ца", "ко", "ре", "зо", "лу", "на", "ни", "ка", "ве",
+            "сто", "ор", "ан", "ди", "по", "ле", "ту", "мо", "ры", "ёж", "ик", "до", "жи"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    public ConfigurableApplicationContext context;
+    public JdbcTemplate jdbcTemplate;
+    public List<String> vocabulary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> args = new ArrayList<>(List.of("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(extraArguments());
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(webApplicationType())
+                .run(args.toArray(new String[0]));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        seed(new Random(42));
+        context.getBean(FilmIndexes.class).rebuild();
+        context.getBean(FriendGraph.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        context.close();
+    }
+
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    protected List<String> extraArguments() {
+        return List.of();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public long randomFilmId(Random random) {
+        return 1 + random.nextInt(size);
+    }
+
+    public String randomWord(Random random) {
+        double skew = random.nextDouble();
+        return vocabulary.get((int) (skew * skew * vocabulary.size()));
+    }
+
+    private void seed(Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 2 + random.nextInt(3); i > 0; i--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        vocabulary = new ArrayList<>(words);
+        LocalDate birthday = LocalDate.of(1990, 1, 1);
+        insert("INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", size,
+                i -> new Object[]{i + 1, "user" + (i + 1) + "@mail.com", "login" + (i + 1), "user" + (i + 1),
+                        Date.valueOf(birthday)});
+        insert("INSERT INTO film (film_id, name, description, release_date, duration, mpa_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)", size,
+                i -> new Object[]{i + 1, randomText(random, 1 + i % 3), randomText(random, 8 + i % 5),
+                        Date.valueOf(LocalDate.of(1950 + i % 70, 1 + i % 12, 1)), 90 + i % 60, 1 + i % 5});
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN user_id RESTART WITH " + (size + 1));
+        jdbcTemplate.execute("ALTER TABLE film ALTER COLUMN film_id RESTART WITH " + (size + 1));
+
+        List<long[]> filmGenres = new ArrayList<>();
+        for (int genreId = 1; genreId <= 6; genreId++) {
+            filmGenres.add(new long[]{HOT_FILM_ID, genreId});
+        }
+        for (long filmId = 2; filmId <= size; filmId++) {
+            filmGenres.add(new long[]{filmId, 1 + filmId % 6});
+        }
+        insertPairs("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", filmGenres);
+
+        Set<Long> likeKeys = new HashSet<>();
+        List<long[]> likes = new ArrayList<>();
+        for (long userId = 1; userId <= size / 10; userId++) {
+            addPair(likeKeys, likes, HOT_FILM_ID, userId);
+        }
+        while (likes.size() < size) {
+            double skew = random.nextDouble();
+            long filmId = 1 + (long) (skew * skew * skew * size);
+            addPair(likeKeys, likes, filmId, 1 + random.nextInt(size));
+        }
+        insertPairs("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", likes);
+        jdbcTemplate.update("UPDATE film AS f " +
+                "SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id)");
+
+        Set<Long> friendKeys = new HashSet<>();
+        List<long[]> friends = new ArrayList<>();
+        int hubFriends = size / 10;
+        for (long i = 0; i < hubFriends; i++) {
+            addPair(friendKeys, friends, HUB_USER_ID, 3 + i);
+            addPair(friendKeys, friends, OTHER_HUB_USER_ID, 3 + hubFriends / 2 + i);
+        }
+        for (long userId = 3; userId <= size; userId++) {
+            for (int i = 0; i < FRIENDS_PER_USER; i++) {
+                long friendId = 1 + random.nextInt(size);
+                if (friendId != userId) {
+                    addPair(friendKeys, friends, userId, friendId);
+                }
+            }
+        }
+        insertPairs("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", friends);
+    }
+
+    private String randomText(Random random, int words) {
+        StringJoiner text = new StringJoiner(" ");
+        for (int i = 0; i < words; i++) {
+            text.add(randomWord(random));
+        }
+        return text.toString();
+    }
+
+    private void addPair(Set<Long> keys, List<long[]> pairs, long first, long second) {
+        if (keys.add(first * (size + 1L) + second)) {
+            pairs.add(new long[]{first, second});
+        }
+    }
+
+    private void insertPairs(String sql, List<long[]> pairs) {
+        insert(sql, pairs.size(), i -> new Object[]{pairs.get(i)[0], pairs.get(i)[1]});
+    }
+
+    private void insert(String sql, int count, RowFactory rows) {
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (int i = from; i < Math.min(count, from + CHUNK_SIZE); i++) {
+                chunk.add(rows.make(i));
+            }
+            jdbcTemplate.batchUpdate(sql, chunk);
+        }
+    }
+
+    private interface RowFactory {
+        Object[] make(int index);
+    }
+}
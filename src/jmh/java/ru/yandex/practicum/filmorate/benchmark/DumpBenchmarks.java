@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.DumpResult;
+import ru.yandex.practicum.filmorate.service.DumpService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DumpBenchmarks {
+    private DumpService dumpService;
+    private byte[] dump;
+    private byte[] gzipDump;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) throws IOException {
+        dumpService = db.getBean(DumpService.class);
+        dump = export(false);
+        gzipDump = export(true);
+    }
+
+    @Benchmark
+    public DumpResult exportDump(Volume volume) throws IOException {
+        return volume.count(dumpService.exportDump(OutputStream.nullOutputStream(), false));
+    }
+
+    @Benchmark
+    public DumpResult exportGzipDump(Volume volume) throws IOException {
+        return volume.count(dumpService.exportDump(OutputStream.nullOutputStream(), true));
+    }
+
+    @Benchmark
+    public DumpResult restoreDump(Volume volume) throws IOException {
+        return volume.count(dumpService.restoreDump(new ByteArrayInputStream(dump)));
+    }
+
+    @Benchmark
+    public DumpResult restoreGzipDump(Volume volume) throws IOException {
+        return volume.count(dumpService.restoreDump(new ByteArrayInputStream(gzipDump)));
+    }
+
+    private byte[] export(boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dumpService.exportDump(out, gzip);
+        return out.toByteArray();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Volume {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+
+        private DumpResult count(DumpResult result) {
+            megabytes += result.getBytes() / 1024.0 / 1024.0;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.search.PopularityIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmBenchmarks {
+    private static final int MAKE_FILM_ROWS = 1000;
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+    private static final int YEARS = 70;
+
+    private FilmService filmService;
+    private FilmDbStorage filmStorage;
+    private EntityCaches entityCaches;
+    private LegacyQueries legacyQueries;
+    private PopularityIndex popularityIndex;
+    private EntityVersions versions;
+    private ObjectMapper objectMapper;
+    private String filmListTag;
+    private String[] filmTags;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        filmService = db.getBean(FilmService.class);
+        filmStorage = db.getBean(FilmDbStorage.class);
+        entityCaches = db.getBean(EntityCaches.class);
+        legacyQueries = new LegacyQueries(db);
+        popularityIndex = db.getBean(PopularityIndex.class);
+        versions = db.getBean(EntityVersions.class);
+        objectMapper = db.getBean(ObjectMapper.class);
+        filmListTag = versions.filmListTag();
+        filmTags = new String[db.size + 1];
+        for (int id = 1; id <= db.size; id++) {
+            filmTags[id] = versions.filmTag(id);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+        private final Random random = new Random();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmService.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenre(ThreadRandom threadRandom) {
+        return filmService.getPopularFilms(10, 1 + threadRandom.random.nextInt(GENRES), null, null);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenreMpaYear(ThreadRandom threadRandom) {
+        Random random = threadRandom.random;
+        return filmService.getPopularFilms(10, 1 + random.nextInt(GENRES), 1 + random.nextInt(MPA),
+                1950 + random.nextInt(YEARS));
+    }
+
+    @Benchmark
+    public List<Long> popularityIndexByGenreMpaYear(ThreadRandom threadRandom) {
+        Random random = threadRandom.random;
+        return popularityIndex.getTop(10, 1 + random.nextInt(GENRES), 1 + random.nextInt(MPA),
+                1950 + random.nextInt(YEARS));
+    }
+
+    @Benchmark
+    public List<Long> legacyPopularFilmsByGenre(BenchmarkDatabase db, ThreadRandom threadRandom) {
+        return db.jdbcTemplate.queryForList("SELECT f.film_id FROM film AS f " +
+                "JOIN film_genre AS fg ON fg.film_id = f.film_id WHERE fg.genre_id = ? " +
+                "ORDER BY f.like_count DESC, f.film_id LIMIT 10", Long.class, 1 + threadRandom.random.nextInt(GENRES));
+    }
+
+    @Benchmark
+    public Film getFilmById(BenchmarkDatabase db, ThreadRandom threadRandom) {
+        return filmStorage.getFilmById(db.randomFilmId(threadRandom.random));
+    }
+
+    @Benchmark
+    public byte[] getFilmByIdAsJson(BenchmarkDatabase db, ThreadRandom threadRandom) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(filmStorage.getFilmById(db.randomFilmId(threadRandom.random)));
+    }
+
+    @Benchmark
+    public boolean filmNotModified(BenchmarkDatabase db, ThreadRandom threadRandom) {
+        long id = db.randomFilmId(threadRandom.random);
+        return versions.filmTag(id).equals(filmTags[(int) id]);
+    }
+
+    @Benchmark
+    public byte[] getPopularFilmsAsJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(filmService.getPopularFilms(10));
+    }
+
+    @Benchmark
+    public boolean popularFilmsNotModified() {
+        return versions.filmListTag().equals(filmListTag);
+    }
+
+    @Benchmark
+    public Film getHotFilmByIdUncached() {
+        entityCaches.films().invalidate(BenchmarkDatabase.HOT_FILM_ID);
+        return filmStorage.getFilmById(BenchmarkDatabase.HOT_FILM_ID);
+    }
+
+    @Benchmark
+    public Film legacyGetHotFilmById() {
+        return legacyQueries.getFilmById(BenchmarkDatabase.HOT_FILM_ID);
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> legacyGetAllFilms() {
+        return legacyQueries.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> makeFilm(BenchmarkDatabase db) {
+        return db.jdbcTemplate.query("SELECT * FROM film WHERE film_id <= ?",
+                (rs, rowNum) -> filmStorage.makeFilm(rs), MAKE_FILM_ROWS);
+    }
+}
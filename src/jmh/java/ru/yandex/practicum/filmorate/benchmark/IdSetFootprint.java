@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+public class IdSetFootprint {
+    private static final int LIKES = 1_000_000;
+    private static final int FILMS = 10_000;
+    private static final long USERS = 1_000_000;
+
+    public static void main(String[] args) {
+        System.out.printf("%d лайков на %d фильмов%n", LIKES, FILMS);
+        measure("HashSet<Long>", HashSet::new);
+        measure("TreeSet<Long>", TreeSet::new);
+        measure("LongIdSet", LongIdSet::new);
+    }
+
+    private static void measure(String name, Supplier<Set<Long>> factory) {
+        Random random = new Random(42);
+        List<Set<Long>> sets = new ArrayList<>(FILMS);
+        for (int i = 0; i < FILMS; i++) {
+            sets.add(factory.get());
+        }
+        int added = 0;
+        while (added < LIKES) {
+            if (sets.get(random.nextInt(FILMS)).add(1 + (long) (random.nextDouble() * USERS))) {
+                added++;
+            }
+        }
+        for (Set<Long> set : sets) {
+            if (set instanceof LongIdSet) {
+                ((LongIdSet) set).trimToSize();
+            }
+        }
+        long bytes = GraphLayout.parseInstance(sets.toArray()).totalSize();
+        System.out.printf("%-14s %,12d байт, %5.1f байт на лайк%n", name, bytes, (double) bytes / LIKES);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ImportBenchmarks {
+    private static final int LIKES = 1_000_000;
+    private static final int CHUNK_SIZE = 1000;
+
+    private FilmDbStorage filmStorage;
+    private ImportService importService;
+    private LegacyQueries legacyQueries;
+    private List<Like> likes;
+    private int seed;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        filmStorage = db.getBean(FilmDbStorage.class);
+        importService = db.getBean(ImportService.class);
+        legacyQueries = new LegacyQueries(db);
+    }
+
+    @Setup(Level.Iteration)
+    public void makeLikes(BenchmarkDatabase db) {
+        Random random = new Random(++seed);
+        likes = new ArrayList<>(LIKES);
+        for (int i = 0; i < LIKES; i++) {
+            double skew = random.nextDouble();
+            likes.add(new Like(1 + (long) (skew * skew * skew * db.size), 1L + random.nextInt(db.size)));
+        }
+    }
+
+    @Benchmark
+    public int addLikes() {
+        return inChunks(filmStorage::addLikes);
+    }
+
+    @Benchmark
+    public int importLikes() {
+        int added = inChunks(filmStorage::importLikes);
+        List<Long> filmIds = likes.stream().map(Like::getFilmId).distinct().collect(Collectors.toList());
+        for (int from = 0; from < filmIds.size(); from += CHUNK_SIZE) {
+            filmStorage.recountLikes(filmIds.subList(from, Math.min(filmIds.size(), from + CHUNK_SIZE)));
+        }
+        return added;
+    }
+
+    @Benchmark
+    public ImportResult importLikesWithIndexes() {
+        return importService.importLikes(likes);
+    }
+
+    @Benchmark
+    public int addLikesRowByRow() {
+        return inChunks(legacyQueries::addLikes);
+    }
+
+    private int inChunks(ToIntFunction<List<Like>> writer) {
+        int added = 0;
+        for (int from = 0; from < likes.size(); from += CHUNK_SIZE) {
+            added += writer.applyAsInt(likes.subList(from, Math.min(likes.size(), from + CHUNK_SIZE)));
+        }
+        return added;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Query paths as they were before the set-based rewrites, kept as a baseline for comparison.
+ */
+public class LegacyQueries {
+    private static final String FILM_SQL = "SELECT f.*, " +
+                    "m.mpa_name, " +
+                    "GROUP_CONCAT(g.genre_id) AS genre_id, " +
+                    "GROUP_CONCAT(g.name) AS genre_name, " +
+                    "GROUP_CONCAT(l.user_id) AS user_id " +
+            "FROM film AS f " +
+            "LEFT OUTER JOIN mpa AS m ON f.mpa_id = m.mpa_id " +
+            "LEFT OUTER JOIN film_genre AS fg ON f.film_id = fg.film_id " +
+            "LEFT OUTER JOIN genre AS g ON fg.genre_id = g.genre_id " +
+            "LEFT OUTER JOIN likes AS l ON f.film_id = l.film_id ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDbStorage userStorage;
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyQueries(BenchmarkDatabase db) {
+        this.jdbcTemplate = db.jdbcTemplate;
+        this.userStorage = db.getBean(UserDbStorage.class);
+        this.userService = db.getBean(UserService.class);
+        this.transactionTemplate = new TransactionTemplate(db.getBean(PlatformTransactionManager.class));
+    }
+
+    public int addLikes(List<Like> likes) {
+        return transactionTemplate.execute(status -> {
+            List<Object[]> rows = new ArrayList<>(likes.size());
+            for (Like like : likes) {
+                rows.add(new Object[]{like.getFilmId(), like.getUserId(), like.getFilmId(), like.getUserId()});
+            }
+            int[] inserted = jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) SELECT ?, ? FROM dual " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)", rows);
+            Map<Long, Integer> likesByFilm = new TreeMap<>();
+            int total = 0;
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    likesByFilm.merge(likes.get(i).getFilmId(), inserted[i], Integer::sum);
+                    total += inserted[i];
+                }
+            }
+            List<Object[]> counts = new ArrayList<>(likesByFilm.size());
+            likesByFilm.forEach((filmId, count) -> counts.add(new Object[]{count, filmId}));
+            jdbcTemplate.batchUpdate("UPDATE film SET like_count = like_count + ? WHERE film_id = ?", counts);
+            return total;
+        });
+    }
+
+    public Film getFilmById(long id) {
+        return jdbcTemplate.queryForObject(FILM_SQL + "WHERE f.film_id = ? GROUP BY f.film_id",
+                (rs, rowNum) -> makeFilm(rs), id);
+    }
+
+    public List<Film> getAllFilms() {
+        return jdbcTemplate.query(FILM_SQL + "GROUP BY f.film_id", (rs, rowNum) -> makeFilm(rs));
+    }
+
+    public User getUserById(long id) {
+        User user = jdbcTemplate.queryForObject("select * from users where user_id = ?",
+                (rs, rowNum) -> userStorage.makeUser(rs), id);
+        user.setFriends(new HashSet<>(jdbcTemplate.queryForList("select friend_id from friends where user_id = ?",
+                Long.class, id)));
+        return user;
+    }
+
+    public List<User> getUserFriends(long id) {
+        List<User> friends = new ArrayList<>();
+        for (Long friendId : getUserById(id).getFriends()) {
+            friends.add(getUserById(friendId));
+        }
+        return friends;
+    }
+
+    public List<User> getCommonFriends(long id, long otherId) {
+        List<User> commonFriends = new ArrayList<>();
+        Set<Long> friendsId = getUserById(id).getFriends();
+        Set<Long> otherFriendsId = getUserById(otherId).getFriends();
+        for (Long commonFriendId : userService.findCommon(friendsId, otherFriendsId)) {
+            commonFriends.add(getUserById(commonFriendId));
+        }
+        return commonFriends;
+    }
+
+    private Film makeFilm(ResultSet rs) throws SQLException {
+        Set<Genre> genres = new TreeSet<>();
+        String genreId = rs.getString("genre_id");
+        String genreName = rs.getString("genre_name");
+        if (genreId != null && genreName != null) {
+            String[] genreIdArray = genreId.split(",");
+            String[] genreNameArray = genreName.split(",");
+            for (int i = 0; i < genreIdArray.length; i++) {
+                genres.add(new Genre(Integer.parseInt(genreIdArray[i]), genreNameArray[i]));
+            }
+        }
+        Set<Long> likes = new TreeSet<>();
+        String filmLikes = rs.getString("user_id");
+        if (filmLikes != null) {
+            for (String filmLike : filmLikes.split(",")) {
+                likes.add(Long.parseLong(filmLike));
+            }
+        }
+        return Film.builder()
+                .id(rs.getLong("film_id"))
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .releaseDate(rs.getDate("release_date").toLocalDate())
+                .duration(rs.getInt("duration"))
+                .mpa(new Mpa(rs.getInt("mpa_id"), rs.getString("mpa_name")))
+                .genres(genres)
+                .likes(likes)
+                .build();
+    }
+}
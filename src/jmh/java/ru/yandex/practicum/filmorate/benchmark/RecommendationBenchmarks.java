@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.search.FilmIndex;
+import ru.yandex.practicum.filmorate.storage.search.SimilarFilmsIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class RecommendationBenchmarks {
+    private static final int LIKES_PER_USER = 20;
+    private static final int USERS_PER_FILM = 50;
+    private static final int QUERIES = 1024;
+
+    @Param({"1000000", "4000000"})
+    public int likes;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private SimilarFilmsIndex index;
+    private final long[] films = new long[QUERIES];
+    private final long[] users = new long[QUERIES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int userCount = likes / LIKES_PER_USER;
+        int filmCount = likes / USERS_PER_FILM;
+        LongIdSet[] likesByFilm = new LongIdSet[filmCount];
+        for (int i = 0; i < filmCount; i++) {
+            likesByFilm[i] = new LongIdSet();
+        }
+        Random random = new Random(42);
+        for (long userId = 1; userId <= userCount; userId++) {
+            int userLikes = 1 + random.nextInt(2 * LIKES_PER_USER - 1);
+            for (int i = 0; i < userLikes; i++) {
+                double skew = random.nextDouble();
+                likesByFilm[(int) (skew * skew * skew * filmCount)].addId(userId);
+            }
+        }
+        index = new SimilarFilmsIndex(20, threads, Integer.MAX_VALUE);
+        FilmIndex.Loader loader = index.newLoader();
+        for (int i = 0; i < filmCount; i++) {
+            likesByFilm[i].trimToSize();
+            loader.add(Film.builder().id(i + 1L).name("film").likes(likesByFilm[i]).build());
+        }
+        loader.commit();
+        for (int i = 0; i < QUERIES; i++) {
+            do {
+                films[i] = 1 + random.nextInt(filmCount);
+                users[i] = 1 + random.nextInt(userCount);
+            } while (likesByFilm[(int) films[i] - 1].containsId(users[i]));
+        }
+    }
+
+    @Benchmark
+    public void rebuild() {
+        index.rebuild(threads);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void likeAndUnlike() {
+        next = (next + 1) % QUERIES;
+        index.addLike(films[next], users[next]);
+        index.deleteLike(films[next], users[next]);
+        index.scheduleRefresh().join();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Long> similar() {
+        next = (next + 1) % QUERIES;
+        return index.getSimilar(films[next], 10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Long> recommend() {
+        next = (next + 1) % QUERIES;
+        return index.recommend(users[next], 10);
+    }
+}
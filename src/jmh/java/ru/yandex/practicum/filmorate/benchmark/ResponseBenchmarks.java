@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(4)
+public class ResponseBenchmarks {
+    private static final int GENRES = 6;
+
+    @State(Scope.Benchmark)
+    public static class Server extends BenchmarkDatabase {
+        @Param({"false", "true"})
+        public boolean responseCache;
+
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        private String baseUrl;
+
+        @Setup(Level.Trial)
+        public void start() {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        @Override
+        protected WebApplicationType webApplicationType() {
+            return WebApplicationType.SERVLET;
+        }
+
+        @Override
+        protected List<String> extraArguments() {
+            return List.of("--server.port=0",
+                    "--management.server.port=-1",
+                    "--filmorate.response-cache.enabled=" + responseCache);
+        }
+
+        private int get(String path, boolean gzip) throws IOException, InterruptedException {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path));
+            if (gzip) {
+                request.header("Accept-Encoding", "gzip");
+            }
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException(path + " -> " + response.statusCode());
+            }
+            return response.body().length;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+        private final Random random = new Random();
+    }
+
+    @Benchmark
+    public int getGenres(Server server) throws IOException, InterruptedException {
+        return server.get("/genres", false);
+    }
+
+    @Benchmark
+    public int getMpa(Server server) throws IOException, InterruptedException {
+        return server.get("/mpa", false);
+    }
+
+    @Benchmark
+    public int getPopularFilms(Server server) throws IOException, InterruptedException {
+        return server.get("/films/popular", false);
+    }
+
+    @Benchmark
+    public int getPopularFilmsGzip(Server server) throws IOException, InterruptedException {
+        return server.get("/films/popular?count=50", true);
+    }
+
+    @Benchmark
+    public int getPopularFilmsByGenre(Server server, ThreadRandom threadRandom)
+            throws IOException, InterruptedException {
+        return server.get("/films/popular?genreId=" + (1 + threadRandom.random.nextInt(GENRES)), false);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.search.FilmSearchIndex;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmarks {
+    private static final int LIMIT = 20;
+    private static final int QUERIES = 1024;
+    private static final Set<FilmSearchIndex.Field> ALL_FIELDS = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+    private FilmSearchIndex searchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        searchIndex = db.getBean(FilmSearchIndex.class);
+    }
+
+    @State(Scope.Thread)
+    public static class Queries {
+        private final String[] words = new String[QUERIES];
+        private final String[] prefixes = new String[QUERIES];
+        private final String[] phrases = new String[QUERIES];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) {
+            Random random = new Random();
+            for (int i = 0; i < QUERIES; i++) {
+                words[i] = db.randomWord(random);
+                prefixes[i] = db.randomWord(random).substring(0, 3);
+                phrases[i] = db.randomWord(random) + " " + db.randomWord(random).substring(0, 3);
+            }
+        }
+
+        private int next() {
+            next = (next + 1) % QUERIES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<Long> searchWord(Queries queries) {
+        return searchIndex.search(queries.words[queries.next()], ALL_FIELDS, LIMIT);
+    }
+
+    @Benchmark
+    public List<Long> searchPrefix(Queries queries) {
+        return searchIndex.search(queries.prefixes[queries.next()], ALL_FIELDS, LIMIT);
+    }
+
+    @Benchmark
+    public List<Long> searchPhrase(Queries queries) {
+        return searchIndex.search(queries.phrases[queries.next()], ALL_FIELDS, LIMIT);
+    }
+
+    @Benchmark
+    public List<Long> legacyLikeScan(BenchmarkDatabase db, Queries queries) {
+        String pattern = "%" + queries.words[queries.next()] + "%";
+        return db.jdbcTemplate.queryForList("SELECT film_id FROM film WHERE LOWER(name) LIKE ? " +
+                "OR LOWER(description) LIKE ? ORDER BY like_count DESC LIMIT " + LIMIT, Long.class, pattern, pattern);
+    }
+}
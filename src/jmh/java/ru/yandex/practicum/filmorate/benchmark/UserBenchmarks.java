@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserBenchmarks {
+    private static final int SUGGESTIONS = 10;
+    private static final int SUGGESTION_USERS = 1024;
+
+    private UserService userService;
+    private FriendGraph friendGraph;
+    private LegacyQueries legacyQueries;
+    private Set<Long> hubFriends;
+    private Set<Long> otherHubFriends;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        userService = db.getBean(UserService.class);
+        friendGraph = db.getBean(FriendGraph.class);
+        legacyQueries = new LegacyQueries(db);
+        hubFriends = new HashSet<>(userService.getUserById(BenchmarkDatabase.HUB_USER_ID).getFriends());
+        otherHubFriends = new HashSet<>(userService.getUserById(BenchmarkDatabase.OTHER_HUB_USER_ID).getFriends());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return userService.getCommonFriends(BenchmarkDatabase.HUB_USER_ID, BenchmarkDatabase.OTHER_HUB_USER_ID);
+    }
+
+    @Benchmark
+    public List<User> legacyGetCommonFriends() {
+        return legacyQueries.getCommonFriends(BenchmarkDatabase.HUB_USER_ID, BenchmarkDatabase.OTHER_HUB_USER_ID);
+    }
+
+    @Benchmark
+    public Set<Long> findCommon() {
+        return userService.findCommon(hubFriends, otherHubFriends);
+    }
+
+    @Benchmark
+    public List<User> getUserFriends() {
+        return userService.getUserFriends(BenchmarkDatabase.HUB_USER_ID);
+    }
+
+    @Benchmark
+    public List<User> legacyGetUserFriends() {
+        return legacyQueries.getUserFriends(BenchmarkDatabase.HUB_USER_ID);
+    }
+
+    @Benchmark
+    public List<User> getSuggestions() {
+        return userService.getSuggestions(nextRegularUser(), SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<Long> suggest() {
+        return friendGraph.suggest(nextRegularUser(), SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<Long> suggestForHub() {
+        return friendGraph.suggest(nextHubUser(), SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<Long> legacySuggestions(BenchmarkDatabase db) {
+        return legacySuggestions(db, nextRegularUser());
+    }
+
+    @Benchmark
+    public List<Long> legacySuggestionsForHub(BenchmarkDatabase db) {
+        return legacySuggestions(db, nextHubUser());
+    }
+
+    private long nextRegularUser() {
+        next = (next + 1) % SUGGESTION_USERS;
+        return 3 + next;
+    }
+
+    private long nextHubUser() {
+        next = (next + 1) % 2;
+        return next == 0 ? BenchmarkDatabase.HUB_USER_ID : BenchmarkDatabase.OTHER_HUB_USER_ID;
+    }
+
+    private static List<Long> legacySuggestions(BenchmarkDatabase db, long userId) {
+        return db.jdbcTemplate.queryForList("SELECT f2.user_id FROM friends AS f1 " +
+                "JOIN friends AS f2 ON f1.friend_id = f2.friend_id " +
+                "WHERE f1.user_id = ? AND f2.user_id <> ? " +
+                "AND f2.user_id NOT IN (SELECT friend_id FROM friends WHERE user_id = ?) " +
+                "GROUP BY f2.user_id ORDER BY COUNT(*) DESC, f2.user_id LIMIT " + SUGGESTIONS,
+                Long.class, userId, userId, userId);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.DumpResult;
+import ru.yandex.practicum.filmorate.model.QueryStatistics;
+import ru.yandex.practicum.filmorate.service.AdminService;
+import ru.yandex.practicum.filmorate.service.DumpService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@Component
+@RestControllerEndpoint(id = "admin")
+public class AdminController {
+
+    private static final MediaType TSV = MediaType.parseMediaType("text/tab-separated-values;charset=UTF-8");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final AdminService adminService;
+
+    private final DumpService dumpService;
+
+    public AdminController(AdminService adminService, DumpService dumpService) {
+        this.adminService = adminService;
+        this.dumpService = dumpService;
+    }
+
+    @GetMapping("/cache")
+    public List<CacheStatistics> getCacheStatistics() {
+        return adminService.getCacheStatistics();
+    }
+
+    @GetMapping("/queries")
+    public List<QueryStatistics> getQueryStatistics() {
+        return adminService.getQueryStatistics();
+    }
+
+    @DeleteMapping("/queries")
+    public void resetQueryStatistics() {
+        adminService.resetQueryStatistics();
+    }
+
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> exportDump(
+            @RequestParam(defaultValue = "false", required = false) boolean gzip
+    ) {
+        String fileName = gzip ? "filmorate.tsv.gz" : "filmorate.tsv";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(gzip ? GZIP : TSV)
+                .body(out -> dumpService.exportDump(out, gzip));
+    }
+
+    @PostMapping("/dump")
+    public DumpResult restoreDump(InputStream body) throws IOException {
+        return dumpService.restoreDump(body);
+    }
+}
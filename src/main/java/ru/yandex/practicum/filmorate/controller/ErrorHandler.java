@@ -1,33 +1,91 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.NoFriendsException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.ErrorResponse;
 
-import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
+@Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
 
+    private final Counter notFoundErrors;
+    private final Counter noFriendsErrors;
+    private final Counter validationErrors;
+    private final Counter dataAccessErrors;
+    private final Counter rejectedErrors;
+    private final Counter timeoutErrors;
+
+    public ErrorHandler(MeterRegistry registry) {
+        this.notFoundErrors = errorCounter(registry, NotFoundException.class);
+        this.noFriendsErrors = errorCounter(registry, NoFriendsException.class);
+        this.validationErrors = errorCounter(registry, ValidationException.class);
+        this.dataAccessErrors = errorCounter(registry, DataAccessException.class);
+        this.rejectedErrors = errorCounter(registry, RejectedExecutionException.class);
+        this.timeoutErrors = errorCounter(registry, TimeoutException.class);
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ErrorResponse notFoundHandler(NotFoundException e) {
+        notFoundErrors.increment();
         return new ErrorResponse(String.format("Такой %s не был добавлен.", e.getParameter()));
     }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ErrorResponse noFriendsHandler(NoFriendsException e) {
+        noFriendsErrors.increment();
         return new ErrorResponse(String.format("У пользователя с id %d нет друзей.", e.getParameter()));
     }
 
     @ExceptionHandler
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    public ErrorResponse sqlExceptionHandler(SQLException e) {
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse validationHandler(ValidationException e) {
+        validationErrors.increment();
         return new ErrorResponse(e.getMessage());
     }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public ErrorResponse dataAccessHandler(DataAccessException e) {
+        dataAccessErrors.increment();
+        log.error("Ошибка доступа к базе данных.", e);
+        return new ErrorResponse("Ошибка доступа к базе данных.");
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> rejectedHandler(RejectedExecutionException e) {
+        rejectedErrors.increment();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("Сервер перегружен, повторите запрос позже."));
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ErrorResponse timeoutHandler(TimeoutException e) {
+        timeoutErrors.increment();
+        return new ErrorResponse("Запрос не уложился в отведённое время.");
+    }
+
+    private static Counter errorCounter(MeterRegistry registry, Class<? extends Exception> type) {
+        return Counter.builder("filmorate.errors")
+                .tag("exception", type.getSimpleName())
+                .description("Ошибки, обработанные ErrorHandler")
+                .register(registry);
+    }
 }
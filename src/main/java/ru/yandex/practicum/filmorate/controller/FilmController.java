@@ -2,58 +2,144 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.executor.Bulkheads;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
 @RequestMapping("/films")
 public class FilmController {
     private FilmService service;
+    private NdjsonStreams ndjsonStreams;
+    private ImportService importService;
+    private Bulkheads bulkheads;
+    private EntityVersions versions;
+    private SerializedResponses responses;
 
     @Autowired
-    public FilmController(FilmService service) {
+    public FilmController(FilmService service, NdjsonStreams ndjsonStreams, ImportService importService,
+                          Bulkheads bulkheads, EntityVersions versions, SerializedResponses responses) {
         this.service = service;
+        this.ndjsonStreams = ndjsonStreams;
+        this.importService = importService;
+        this.bulkheads = bulkheads;
+        this.versions = versions;
+        this.responses = responses;
     }
 
     @PostMapping
-    public Film addFilm(@Valid @RequestBody Film film) {
-        return service.addFilm(film);
+    public CompletableFuture<Film> addFilm(@Valid @RequestBody Film film) {
+        return bulkheads.write(() -> service.addFilm(film));
     }
 
     @PutMapping
-    public Film updateFilm(@Valid @RequestBody Film film) {
-        return service.updateFilm(film);
+    public CompletableFuture<Film> updateFilm(@Valid @RequestBody Film film) {
+        return bulkheads.write(() -> service.updateFilm(film));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ImportResult> addFilms(@RequestBody List<Film> films) {
+        return bulkheads.importBatch(() -> importService.importFilms(films));
+    }
+
+    @PostMapping("/likes/batch")
+    public CompletableFuture<ImportResult> addLikes(@RequestBody List<Like> likes) {
+        return bulkheads.importBatch(() -> importService.importLikes(likes));
     }
 
     @GetMapping
-    public List<Film> getAllFilms() {
-        return service.getAllFilms();
+    public CompletableFuture<List<Film>> getAllFilms(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(versions.filmListTag())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (after == null && limit == null) {
+            return bulkheads.listScan(service::getAllFilms);
+        }
+        return bulkheads.listScan(() -> service.getFilms(after, limit));
+    }
+
+    @GetMapping(produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody streamAllFilms() {
+        return ndjsonStreams.stream(service::forEachFilm);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
-        return service.getFilmById(id);
+    public CompletableFuture<ResponseEntity<Film>> getFilmById(@PathVariable Long id, WebRequest request) {
+        String tag = versions.filmTag(id);
+        if (tag != null && request.checkNotModified(tag)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long base = versions.base();
+        return bulkheads.pointRead(() -> {
+            Film film = service.getFilmById(id);
+            String loadedTag = tag == null ? versions.filmLoaded(id, base) : null;
+            return loadedTag == null ? ResponseEntity.ok(film) : ResponseEntity.ok().eTag(loadedTag).body(film);
+        });
+    }
+
+    @GetMapping("/{id}/similar")
+    public CompletableFuture<List<Film>> getSimilarFilms(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10", required = false) Integer count
+    ) {
+        return bulkheads.pointRead(() -> service.getSimilarFilms(id, count));
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public Film addLike(@PathVariable Long id, @PathVariable Long userId) {
-        return service.addLike(id, userId);
+    public CompletableFuture<Film> addLike(@PathVariable Long id, @PathVariable Long userId) {
+        return bulkheads.write(() -> service.addLike(id, userId));
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public Film deleteLike(@PathVariable Long id, @PathVariable Long userId) {
-        return service.deleteLike(id, userId);
+    public CompletableFuture<Film> deleteLike(@PathVariable Long id, @PathVariable Long userId) {
+        return bulkheads.write(() -> service.deleteLike(id, userId));
+    }
+
+    @GetMapping("/search")
+    public CompletableFuture<List<Film>> searchFilms(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "name,description") String by,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return bulkheads.pointRead(() -> service.searchFilms(q, by, limit));
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(
-            @RequestParam(defaultValue = "10", required = false) Integer count
+    public CompletableFuture<ResponseEntity<byte[]>> getPopularFilms(
+            @RequestParam(defaultValue = "10", required = false) Integer count,
+            @RequestParam(required = false) Integer genreId,
+            @RequestParam(required = false) Integer mpaId,
+            @RequestParam(required = false) Integer year,
+            WebRequest request
     ) {
-        return service.getPopularFilms(count);
+        String tag = versions.filmListTag();
+        if (request.checkNotModified(tag)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String key = String.format("popular?count=%s&genreId=%s&mpaId=%s&year=%s", count, genreId, mpaId, year);
+        boolean acceptsGzip = responses.acceptsGzip(request);
+        ResponseEntity<byte[]> cached = responses.getCached(key, tag, acceptsGzip);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return bulkheads.pointRead(() ->
+                responses.serialize(key, tag, service.getPopularFilms(count, genreId, mpaId, year), acceptsGzip));
     }
 }
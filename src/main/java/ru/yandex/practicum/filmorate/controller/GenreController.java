@@ -1,28 +1,40 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.yandex.practicum.filmorate.model.Genre;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.service.GenreService;
-
-import java.util.List;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 @RestController
 @RequestMapping("/genres")
 public class GenreController {
 
     private final GenreService genreService;
+    private final EntityVersions versions;
+    private final SerializedResponses responses;
 
-    public GenreController(GenreService genreService) {
+    public GenreController(GenreService genreService, EntityVersions versions, SerializedResponses responses) {
         this.genreService = genreService;
+        this.versions = versions;
+        this.responses = responses;
     }
 
     @GetMapping
-    public List<Genre> getAllGenres() {
-        return genreService.getAllGenres();
+    public ResponseEntity<byte[]> getAllGenres(WebRequest request) {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return responses.get("genres", tag, request, genreService::getAllGenres);
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable Integer id) {
-        return genreService.getGenreById(id);
+    public ResponseEntity<byte[]> getGenreById(@PathVariable Integer id, WebRequest request) {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return responses.get("genres/" + id, tag, request, () -> genreService.getGenreById(id));
     }
 }
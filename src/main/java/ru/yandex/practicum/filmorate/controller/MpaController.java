@@ -1,32 +1,44 @@
 package ru.yandex.practicum.filmorate.controller;
 
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.service.MpaService;
-
-import java.util.List;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 @RestController
 @RequestMapping("/mpa")
 public class MpaController {
 
     private final MpaService mpaService;
+    private final EntityVersions versions;
+    private final SerializedResponses responses;
 
-    public MpaController(MpaService mpaService) {
+    public MpaController(MpaService mpaService, EntityVersions versions, SerializedResponses responses) {
         this.mpaService = mpaService;
+        this.versions = versions;
+        this.responses = responses;
     }
 
     @GetMapping
-    public List<Mpa> getAllMpa() {
-        return mpaService.getAllMpa();
+    public ResponseEntity<byte[]> getAllMpa(WebRequest request) {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return responses.get("mpa", tag, request, mpaService::getAllMpa);
     }
 
     @GetMapping("/{id}")
-    public Mpa getMpaById(@PathVariable Integer id) {
-        return mpaService.getMpaById(id);
+    public ResponseEntity<byte[]> getMpaById(@PathVariable Integer id, WebRequest request) {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return responses.get("mpa/" + id, tag, request, () -> mpaService.getMpaById(id));
     }
 }
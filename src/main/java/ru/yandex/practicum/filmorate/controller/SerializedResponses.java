@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+public class SerializedResponses {
+
+    private static final String GZIP = "gzip";
+
+    private final ObjectWriter writer;
+    private final boolean enabled;
+    private final boolean gzip;
+    private final int gzipMinSize;
+    private final Cache<String, Entry> entries;
+
+    public SerializedResponses(ObjectMapper objectMapper,
+                               @Value("${filmorate.response-cache.enabled}") boolean enabled,
+                               @Value("${filmorate.response-cache.maximum-size}") long maximumSize,
+                               @Value("${filmorate.response-cache.gzip}") boolean gzip,
+                               @Value("${filmorate.response-cache.gzip-min-size}") int gzipMinSize) {
+        this.writer = objectMapper.writer();
+        this.enabled = enabled;
+        this.gzip = gzip;
+        this.gzipMinSize = gzipMinSize;
+        this.entries = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public ResponseEntity<byte[]> get(String key, String tag, WebRequest request, Supplier<?> body) {
+        boolean acceptsGzip = acceptsGzip(request);
+        ResponseEntity<byte[]> response = getCached(key, tag, acceptsGzip);
+        return response != null ? response : serialize(key, tag, body.get(), acceptsGzip);
+    }
+
+    public ResponseEntity<byte[]> getCached(String key, String tag, boolean acceptsGzip) {
+        Entry entry = enabled ? entries.getIfPresent(key) : null;
+        if (entry == null || !entry.tag.equals(tag)) {
+            return null;
+        }
+        return entry.toResponse(acceptsGzip);
+    }
+
+    public ResponseEntity<byte[]> serialize(String key, String tag, Object body, boolean acceptsGzip) {
+        byte[] json;
+        try {
+            json = writer.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        Entry entry = new Entry(tag, json, gzip && json.length >= gzipMinSize ? compress(json) : null);
+        if (enabled) {
+            entries.put(key, entry);
+        }
+        return entry.toResponse(acceptsGzip);
+    }
+
+    public boolean acceptsGzip(WebRequest request) {
+        return acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals(GZIP) || name.equals("x-gzip")) {
+                gzipQuality = quality(parameters);
+            } else if (name.equals("*")) {
+                anyQuality = quality(parameters);
+            }
+        }
+        Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+        return quality != null && quality > 0;
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.length() > 2 && Character.toLowerCase(parameter.charAt(0)) == 'q'
+                    && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Entry {
+        private final String tag;
+        private final byte[] json;
+        private final byte[] gzipped;
+
+        private Entry(String tag, byte[] json, byte[] gzipped) {
+            this.tag = tag;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        private ResponseEntity<byte[]> toResponse(boolean acceptsGzip) {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(tag);
+            if (gzipped == null) {
+                return builder.body(json);
+            }
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (!acceptsGzip) {
+                return builder.body(json);
+            }
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(gzipped);
+        }
+    }
+}
@@ -2,61 +2,133 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.executor.Bulkheads;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 import javax.validation.Valid;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private UserService service;
+    private FilmService filmService;
+    private NdjsonStreams ndjsonStreams;
+    private ImportService importService;
+    private Bulkheads bulkheads;
+    private EntityVersions versions;
 
     @Autowired
-    public UserController(UserService service) {
+    public UserController(UserService service, FilmService filmService, NdjsonStreams ndjsonStreams,
+                          ImportService importService, Bulkheads bulkheads, EntityVersions versions) {
         this.service = service;
+        this.filmService = filmService;
+        this.ndjsonStreams = ndjsonStreams;
+        this.importService = importService;
+        this.bulkheads = bulkheads;
+        this.versions = versions;
     }
 
     @PostMapping
-    public User addUser(@Valid @RequestBody User user) {
-        return service.addUser(user);
+    public CompletableFuture<User> addUser(@Valid @RequestBody User user) {
+        return bulkheads.write(() -> service.addUser(user));
     }
 
     @PutMapping
-    public User updateUser(@Valid @RequestBody User user) {
-        return service.updateUser(user);
+    public CompletableFuture<User> updateUser(@Valid @RequestBody User user) {
+        return bulkheads.write(() -> service.updateUser(user));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ImportResult> addUsers(@RequestBody List<User> users) {
+        return bulkheads.importBatch(() -> importService.importUsers(users));
+    }
+
+    @PostMapping("/friends/batch")
+    public CompletableFuture<ImportResult> addFriendships(@RequestBody List<Friendship> friendships) {
+        return bulkheads.importBatch(() -> importService.importFriendships(friendships));
     }
 
     @GetMapping
-    public List<User> getAllUsers() {
-        return service.getAllUsers();
+    public CompletableFuture<List<User>> getAllUsers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(versions.userListTag())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (after == null && limit == null) {
+            return bulkheads.listScan(service::getAllUsers);
+        }
+        return bulkheads.listScan(() -> service.getUsers(after, limit));
+    }
+
+    @GetMapping(produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody streamAllUsers() {
+        return ndjsonStreams.stream(service::forEachUser);
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Long id) {
-        return service.getUserById(id);
+    public CompletableFuture<ResponseEntity<User>> getUserById(@PathVariable Long id, WebRequest request) {
+        String tag = versions.userTag(id);
+        if (tag != null && request.checkNotModified(tag)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long base = versions.base();
+        return bulkheads.pointRead(() -> {
+            User user = service.getUserById(id);
+            String loadedTag = tag == null ? versions.userLoaded(id, base) : null;
+            return loadedTag == null ? ResponseEntity.ok(user) : ResponseEntity.ok().eTag(loadedTag).body(user);
+        });
     }
 
     @PutMapping("/{id}/friends/{friendId}")
-    public User addFriend(@PathVariable Long id, @PathVariable Long friendId) {
-        return service.addFriend(id, friendId);
+    public CompletableFuture<User> addFriend(@PathVariable Long id, @PathVariable Long friendId) {
+        return bulkheads.write(() -> service.addFriend(id, friendId));
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
-    public User deleteFriend(@PathVariable Long id, @PathVariable Long friendId) {
-        return service.deleteFriend(id, friendId);
+    public CompletableFuture<User> deleteFriend(@PathVariable Long id, @PathVariable Long friendId) {
+        return bulkheads.write(() -> service.deleteFriend(id, friendId));
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getUserFriends(@PathVariable Long id) {
-        return service.getUserFriends(id);
+    public CompletableFuture<List<User>> getUserFriends(@PathVariable Long id) {
+        return bulkheads.pointRead(() -> service.getUserFriends(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
-        return service.getCommonFriends(id, otherId);
+    public CompletableFuture<List<User>> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
+        return bulkheads.pointRead(() -> service.getCommonFriends(id, otherId));
+    }
+
+    @GetMapping("/{id}/suggestions")
+    public CompletableFuture<List<User>> getSuggestions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10", required = false) Integer limit
+    ) {
+        return bulkheads.pointRead(() -> service.getSuggestions(id, limit));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public CompletableFuture<List<Film>> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10", required = false) Integer count
+    ) {
+        return bulkheads.pointRead(() -> filmService.getRecommendations(id, count));
     }
 }
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Component
+public class Bulkheads {
+
+    private final ThreadPoolTaskExecutor pointReads;
+    private final ThreadPoolTaskExecutor listScans;
+    private final ThreadPoolTaskExecutor writes;
+    private final ThreadPoolTaskExecutor lookups;
+    private final ThreadPoolTaskExecutor imports;
+    private final ThreadPoolTaskExecutor streams;
+    private final Duration pointReadTimeout;
+    private final Duration listScanTimeout;
+
+    public Bulkheads(MeterRegistry registry,
+                     @Value("${filmorate.bulkhead.point-reads.threads}") int pointReadThreads,
+                     @Value("${filmorate.bulkhead.point-reads.queue}") int pointReadQueue,
+                     @Value("${filmorate.bulkhead.point-reads.timeout}") Duration pointReadTimeout,
+                     @Value("${filmorate.bulkhead.list-scans.threads}") int listScanThreads,
+                     @Value("${filmorate.bulkhead.list-scans.queue}") int listScanQueue,
+                     @Value("${filmorate.bulkhead.list-scans.timeout}") Duration listScanTimeout,
+                     @Value("${filmorate.bulkhead.writes.threads}") int writeThreads,
+                     @Value("${filmorate.bulkhead.writes.queue}") int writeQueue,
+                     @Value("${filmorate.bulkhead.lookups.threads}") int lookupThreads,
+                     @Value("${filmorate.bulkhead.imports.threads}") int importThreads,
+                     @Value("${filmorate.bulkhead.imports.queue}") int importQueue,
+                     @Value("${filmorate.bulkhead.streams.threads}") int streamThreads,
+                     @Value("${filmorate.bulkhead.streams.queue}") int streamQueue) {
+        this.pointReads = build(registry, "point-reads", pointReadThreads, pointReadQueue,
+                rejecting(registry, "point-reads"));
+        this.listScans = build(registry, "list-scans", listScanThreads, listScanQueue,
+                rejecting(registry, "list-scans"));
+        this.writes = build(registry, "writes", writeThreads, writeQueue, rejecting(registry, "writes"));
+        this.lookups = build(registry, "lookups", lookupThreads, 0, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.imports = build(registry, "imports", importThreads, importQueue, rejecting(registry, "imports"));
+        this.streams = build(registry, "streams", streamThreads, streamQueue, rejecting(registry, "streams"));
+        this.pointReadTimeout = pointReadTimeout;
+        this.listScanTimeout = listScanTimeout;
+    }
+
+    public ThreadPoolTaskExecutor streams() {
+        return streams;
+    }
+
+    public <T> CompletableFuture<T> pointRead(Supplier<T> action) {
+        return withTimeout(CompletableFuture.supplyAsync(action, pointReads), pointReadTimeout);
+    }
+
+    public <T> CompletableFuture<T> listScan(Supplier<T> action) {
+        return withTimeout(CompletableFuture.supplyAsync(action, listScans), listScanTimeout);
+    }
+
+    public <T> CompletableFuture<T> write(Supplier<T> action) {
+        return CompletableFuture.supplyAsync(action, writes);
+    }
+
+    public <T> CompletableFuture<T> importBatch(Supplier<T> action) {
+        return CompletableFuture.supplyAsync(action, imports);
+    }
+
+    public <T> CompletableFuture<T> lookup(Supplier<T> action) {
+        return CompletableFuture.supplyAsync(action, lookups);
+    }
+
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pointReads.shutdown();
+        listScans.shutdown();
+        writes.shutdown();
+        lookups.shutdown();
+        imports.shutdown();
+        streams.shutdown();
+    }
+
+    private static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, Duration timeout) {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return future;
+        }
+        return future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadPoolTaskExecutor build(MeterRegistry registry, String name, int threads, int queue,
+                                                RejectedExecutionHandler rejectedExecutionHandler) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queue);
+        executor.setRejectedExecutionHandler(rejectedExecutionHandler);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), name, Tags.empty()).bindTo(registry);
+        return executor;
+    }
+
+    private static RejectedExecutionHandler rejecting(MeterRegistry registry, String name) {
+        Counter rejected = Counter.builder("filmorate.bulkhead.rejected")
+                .tag("bulkhead", name)
+                .description("Задачи, отклонённые из-за переполнения пула")
+                .register(registry);
+        return (task, executor) -> {
+            rejected.increment();
+            throw new RejectedExecutionException(String.format("Пул %s переполнен.", name));
+        };
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class ProfilingDataSource extends DelegatingDataSource implements Closeable {
+
+    private static final String BATCH = "<batch>";
+
+    private final QueryProfiler profiler;
+
+    public ProfilingDataSource(DataSource targetDataSource, QueryProfiler profiler) {
+        super(targetDataSource);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Connection connection = super.getConnection(username, password);
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public void close() throws IOException {
+        DataSource target = getTargetDataSource();
+        if (target instanceof Closeable) {
+            ((Closeable) target).close();
+        } else if (target instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) target).close();
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return method.invoke(target, args);
+            }
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = ProfilingDataSource.invoke(proxy, connection, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return wrap(method.getReturnType(),
+                            new StatementHandler(result, profiler.statisticsFor((String) args[0])));
+                case "createStatement":
+                    return wrap(method.getReturnType(), new StatementHandler(result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Object statement;
+        private final StatementStatistics prepared;
+        private StatementStatistics current;
+        private StatementStatistics open;
+        private long openedAt;
+
+        private StatementHandler(Object statement, StatementStatistics prepared) {
+            this.statement = statement;
+            this.prepared = prepared;
+            this.current = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (name.equals("close")) {
+                    finish();
+                }
+                return ProfilingDataSource.invoke(proxy, statement, method, args);
+            }
+            finish();
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                current = profiler.statisticsFor((String) args[0]);
+            } else if (current == null || prepared == null && name.endsWith("Batch")) {
+                current = profiler.statisticsFor(BATCH);
+            }
+            StatementStatistics statistics = current;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = ProfilingDataSource.invoke(proxy, statement, method, args);
+            } catch (Throwable e) {
+                profiler.record(statistics, System.nanoTime() - start, true);
+                throw e;
+            }
+            if (result instanceof ResultSet || result == Boolean.TRUE) {
+                open = statistics;
+                openedAt = start;
+            } else {
+                profiler.record(statistics, System.nanoTime() - start, false);
+                countRowsAffected(statistics, result);
+            }
+            return result;
+        }
+
+        private void finish() {
+            if (open != null) {
+                profiler.record(open, System.nanoTime() - openedAt, false);
+                open = null;
+            }
+        }
+
+        private void countRowsAffected(StatementStatistics statistics, Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                statistics.rowsAffected.add(Math.max(0, ((Number) result).longValue()));
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    statistics.rowsAffected.add(Math.max(0, count));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    statistics.rowsAffected.add(Math.max(0, count));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+@Component
+@ConditionalOnProperty(value = "filmorate.profiler.enabled", havingValue = "true")
+public class ProfilingDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<QueryProfiler> profiler;
+
+    public ProfilingDataSourcePostProcessor(ObjectProvider<QueryProfiler> profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof ProfilingDataSource)) {
+            return new ProfilingDataSource((DataSource) bean, profiler.getObject());
+        }
+        return bean;
+    }
+}
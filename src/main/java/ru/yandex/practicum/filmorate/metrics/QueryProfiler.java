@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.QueryStatistics;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class QueryProfiler {
+
+    static final int MAX_NORMALIZED_STATEMENTS = 1_000;
+    static final String OTHER = "<other>";
+    private static final int MAX_RAW_STATEMENTS = 10_000;
+    private static final String APPLICATION_PACKAGE = "ru.yandex.practicum.filmorate.";
+    private static final String SERVICE_PACKAGE = APPLICATION_PACKAGE + "service.";
+    private static final String PROFILER_PACKAGE = QueryProfiler.class.getPackageName() + ".";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final ConcurrentMap<String, StatementStatistics> byRawSql = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StatementStatistics> byNormalizedSql = new ConcurrentHashMap<>();
+    private final long slowQueryThresholdNanos;
+
+    public QueryProfiler(@Value("${filmorate.profiler.slow-query-threshold}") Duration slowQueryThreshold) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    StatementStatistics statisticsFor(String sql) {
+        StatementStatistics statistics = byRawSql.get(sql);
+        if (statistics != null) {
+            return statistics;
+        }
+        String normalized = normalize(sql);
+        statistics = byNormalizedSql.get(normalized);
+        if (statistics == null) {
+            statistics = byNormalizedSql.computeIfAbsent(
+                    byNormalizedSql.size() < MAX_NORMALIZED_STATEMENTS ? normalized : OTHER, StatementStatistics::new);
+        }
+        if (byRawSql.size() < MAX_RAW_STATEMENTS) {
+            byRawSql.putIfAbsent(sql, statistics);
+        }
+        return statistics;
+    }
+
+    void record(StatementStatistics statistics, long nanos, boolean failed) {
+        statistics.record(nanos, failed);
+        if (nanos >= slowQueryThresholdNanos) {
+            log.warn("Медленный запрос ({} мс) из {}: {}",
+                    Math.round(nanos / NANOS_PER_MILLI), findCaller(), statistics.sql);
+        }
+    }
+
+    public List<QueryStatistics> getStatistics() {
+        return byNormalizedSql.values().stream()
+                .map(QueryProfiler::makeQueryStatistics)
+                .filter(statistics -> statistics.getCalls() > 0)
+                .sorted(Comparator.comparingDouble(QueryStatistics::getTotalMillis).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        byNormalizedSql.values().forEach(StatementStatistics::reset);
+    }
+
+    static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (normalized.length() > 0 && i < sql.length()) {
+                    normalized.append(' ');
+                }
+            } else if (c == '\'') {
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'' && (i + 1 == sql.length() || sql.charAt(i + 1) != '\'')) {
+                        break;
+                    }
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                i++;
+                normalized.append('?');
+            } else if (Character.isDigit(c) && !endsWithIdentifier(normalized)) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                normalized.append('?');
+            } else {
+                normalized.append(c);
+                i++;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean endsWithIdentifier(StringBuilder sql) {
+        if (sql.length() == 0) {
+            return false;
+        }
+        char last = sql.charAt(sql.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_';
+    }
+
+    private static String findCaller() {
+        List<StackWalker.StackFrame> frames = StackWalker.getInstance().walk(stream -> stream
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE))
+                .filter(frame -> !frame.getClassName().startsWith(PROFILER_PACKAGE))
+                .filter(frame -> !frame.getClassName().contains("$$"))
+                .collect(Collectors.toList()));
+        Optional<StackWalker.StackFrame> serviceFrame = frames.stream()
+                .filter(frame -> frame.getClassName().startsWith(SERVICE_PACKAGE))
+                .findFirst();
+        return serviceFrame.or(() -> frames.stream().findFirst())
+                .map(frame -> frame.getClassName().substring(APPLICATION_PACKAGE.length()) + "."
+                        + frame.getMethodName())
+                .orElse("неизвестного места");
+    }
+
+    private static QueryStatistics makeQueryStatistics(StatementStatistics statistics) {
+        long calls = statistics.calls.sum();
+        long totalNanos = statistics.totalNanos.sum();
+        return QueryStatistics.builder()
+                .sql(statistics.sql)
+                .calls(calls)
+                .errors(statistics.errors.sum())
+                .totalMillis(totalNanos / NANOS_PER_MILLI)
+                .avgMillis(calls == 0 ? 0 : totalNanos / NANOS_PER_MILLI / calls)
+                .p99Millis(statistics.histogram.percentileMicros(99) / 1000.0)
+                .maxMillis(statistics.maxNanos.get() / NANOS_PER_MILLI)
+                .rowsAffected(statistics.rowsAffected.sum())
+                .build();
+    }
+}
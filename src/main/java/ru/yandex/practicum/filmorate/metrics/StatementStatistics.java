@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+class StatementStatistics {
+
+    final String sql;
+    final LongAdder calls = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    final LongAdder rowsAffected = new LongAdder();
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    StatementStatistics(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, boolean failed) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void reset() {
+        calls.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        rowsAffected.reset();
+        histogram.reset();
+    }
+}
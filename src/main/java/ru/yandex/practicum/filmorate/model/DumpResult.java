@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class DumpResult {
+    private Map<String, Long> rows;
+    private long bytes;
+    private long millis;
+    private double megabytesPerSecond;
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 import ru.yandex.practicum.filmorate.validator.IsAfter;
 import ru.yandex.practicum.filmorate.validator.NotLongerThan;
 
@@ -9,14 +11,15 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
+@Jacksonized
 public class Film {
     private long id;
-    private Set<Long> likes = new HashSet<>();
+    @JsonDeserialize(as = LongIdSet.class)
+    private Set<Long> likes = new LongIdSet();
 
     @IsAfter("1895-12-28")
     private LocalDate releaseDate;
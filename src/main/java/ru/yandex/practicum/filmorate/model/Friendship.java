@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class Friendship {
+
+    private final Long userId;
+    private final Long friendId;
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ImportChunk {
+    private int index;
+    private int offset;
+    private int size;
+    private int imported;
+    private long millis;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportResult {
+    private int total;
+    private int imported;
+    private int skipped;
+    private int failed;
+    private List<Long> ids;
+    private List<String> errors;
+    private List<ImportChunk> chunks;
+}
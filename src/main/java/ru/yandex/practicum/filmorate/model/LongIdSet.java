@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.*;
+
+public class LongIdSet extends AbstractSet<Long> {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] ids;
+    private int size;
+    private boolean frozen;
+
+    public LongIdSet() {
+        ids = EMPTY;
+    }
+
+    public LongIdSet(int capacity) {
+        ids = capacity == 0 ? EMPTY : new long[capacity];
+    }
+
+    public LongIdSet(Collection<Long> ids) {
+        if (ids instanceof LongIdSet) {
+            LongIdSet other = (LongIdSet) ids;
+            this.ids = Arrays.copyOf(other.ids, other.size);
+            this.size = other.size;
+            return;
+        }
+        this.ids = new long[ids.size()];
+        for (Long id : ids) {
+            this.ids[size++] = id;
+        }
+        sortAndDeduplicate();
+    }
+
+    public static LongIdSet of(long... ids) {
+        LongIdSet set = new LongIdSet();
+        set.ids = Arrays.copyOf(ids, ids.length);
+        set.size = ids.length;
+        set.sortAndDeduplicate();
+        return set;
+    }
+
+    public static LongIdSet copyOf(Collection<Long> ids) {
+        return ids == null ? new LongIdSet() : new LongIdSet(ids);
+    }
+
+    public LongIdSet freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public boolean containsId(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public boolean addId(long id) {
+        checkWritable();
+        if (size > 0 && ids[size - 1] < id) {
+            ensureCapacity(size + 1);
+            ids[size++] = id;
+            return true;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+        return true;
+    }
+
+    public boolean removeId(long id) {
+        checkWritable();
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public long getId(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    public LongIdSet intersect(LongIdSet other) {
+        LongIdSet small = size <= other.size ? this : other;
+        LongIdSet big = small == this ? other : this;
+        LongIdSet result = new LongIdSet(small.size);
+        if (small.size * 8L < big.size) {
+            for (int i = 0; i < small.size; i++) {
+                if (big.containsId(small.ids[i])) {
+                    result.ids[result.size++] = small.ids[i];
+                }
+            }
+            return result;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < small.size && j < big.size) {
+            long a = small.ids[i];
+            long b = big.ids[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                result.ids[result.size++] = a;
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int intersectionSize(LongIdSet other) {
+        LongIdSet small = size <= other.size ? this : other;
+        LongIdSet big = small == this ? other : this;
+        int count = 0;
+        if (small.size * 8L < big.size) {
+            for (int i = 0; i < small.size; i++) {
+                if (big.containsId(small.ids[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < small.size && j < big.size) {
+            long a = small.ids[i];
+            long b = big.ids[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    public void trimToSize() {
+        if (!frozen && ids.length > size) {
+            ids = size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && containsId((Long) o);
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return addId(id);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long && removeId((Long) o);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        checkWritable();
+        if (c.isEmpty()) {
+            return false;
+        }
+        int oldSize = size;
+        ensureCapacity(size + c.size());
+        for (Long id : c) {
+            ids[size++] = id;
+        }
+        sortAndDeduplicate();
+        return size != oldSize;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return ids[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkWritable();
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LongIdSet) {
+            LongIdSet other = (LongIdSet) o;
+            return Arrays.equals(ids, 0, size, other.ids, 0, other.size);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < size; i++) {
+            hash += Long.hashCode(ids[i]);
+        }
+        return hash;
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, Math.max(4, ids.length + (ids.length >> 1))));
+        }
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    private void sortAndDeduplicate() {
+        Arrays.sort(ids, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        size = unique;
+    }
+}
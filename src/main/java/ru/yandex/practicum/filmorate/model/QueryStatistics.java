@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class QueryStatistics {
+    private String sql;
+    private long calls;
+    private long errors;
+    private double totalMillis;
+    private double avgMillis;
+    private double p99Millis;
+    private double maxMillis;
+    private long rowsAffected;
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 import ru.yandex.practicum.filmorate.validator.NoSpaces;
 import ru.yandex.practicum.filmorate.validator.ReplaceNoNameWithLogin;
 
@@ -14,11 +16,13 @@ import java.util.Objects;
 import java.util.Set;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
+@Jacksonized
 @ReplaceNoNameWithLogin
 public class User {
     private Long id;
 
+    @JsonDeserialize(as = LongIdSet.class)
     private Set<Long> friends;
 
     @NotNull @NotBlank @Email
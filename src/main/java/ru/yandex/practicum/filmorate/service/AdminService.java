@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.metrics.QueryProfiler;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.QueryStatistics;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+
+import java.util.List;
+
+@Service
+public class AdminService {
+
+    private final EntityCaches entityCaches;
+
+    private final QueryProfiler queryProfiler;
+
+    public AdminService(EntityCaches entityCaches, QueryProfiler queryProfiler) {
+        this.entityCaches = entityCaches;
+        this.queryProfiler = queryProfiler;
+    }
+
+    public List<CacheStatistics> getCacheStatistics() {
+        return entityCaches.getStatistics();
+    }
+
+    public List<QueryStatistics> getQueryStatistics() {
+        return queryProfiler.getStatistics();
+    }
+
+    public void resetQueryStatistics() {
+        queryProfiler.reset();
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.DumpResult;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.dump.DumpDao;
+import ru.yandex.practicum.filmorate.storage.film.WriteBehindFilmStorage;
+import ru.yandex.practicum.filmorate.storage.search.FilmIndexes;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Service
+public class DumpService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DumpDao dumpDao;
+    private final EntityCaches entityCaches;
+    private final EntityVersions versions;
+    private final ObjectProvider<WriteBehindFilmStorage> writeBehindStorage;
+    private final FilmIndexes filmIndexes;
+    private final FriendGraph friendGraph;
+
+    public DumpService(DumpDao dumpDao, EntityCaches entityCaches, EntityVersions versions,
+                       ObjectProvider<WriteBehindFilmStorage> writeBehindStorage, FilmIndexes filmIndexes,
+                       FriendGraph friendGraph) {
+        this.dumpDao = dumpDao;
+        this.entityCaches = entityCaches;
+        this.versions = versions;
+        this.writeBehindStorage = writeBehindStorage;
+        this.filmIndexes = filmIndexes;
+        this.friendGraph = friendGraph;
+    }
+
+    public DumpResult exportDump(OutputStream out, boolean gzip) throws IOException {
+        writeBehindStorage.ifAvailable(WriteBehindFilmStorage::flush);
+        long start = System.nanoTime();
+        GZIPOutputStream compressed = gzip ? new FastGzipOutputStream(out) : null;
+        CountingOutputStream counter = new CountingOutputStream(gzip ? compressed : out);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Map<String, Long> rows = dumpDao.exportTables(writer);
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+        DumpResult result = makeResult(rows, counter.count, start);
+        log.info("Выгрузка базы завершена: строк {}, {} МБ за {} мс ({} МБ/с).", rows,
+                megabytes(result.getBytes()), result.getMillis(), result.getMegabytesPerSecond());
+        return result;
+    }
+
+    public DumpResult restoreDump(InputStream in) throws IOException {
+        writeBehindStorage.ifAvailable(WriteBehindFilmStorage::flush);
+        long start = System.nanoTime();
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        CountingInputStream counter = new CountingInputStream(isGzip(buffered)
+                ? new GZIPInputStream(buffered, BUFFER_SIZE)
+                : buffered);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        Map<String, Long> rows;
+        try {
+            rows = dumpDao.restoreTables(reader);
+            dumpDao.restartIdentities();
+        } finally {
+            entityCaches.invalidateAll();
+            versions.invalidateAll();
+            filmIndexes.rebuild();
+            friendGraph.rebuild();
+        }
+        DumpResult result = makeResult(rows, counter.count, start);
+        log.info("База восстановлена из выгрузки: строк {}, {} МБ за {} мс ({} МБ/с).", rows,
+                megabytes(result.getBytes()), result.getMillis(), result.getMegabytesPerSecond());
+        return result;
+    }
+
+    private static boolean isGzip(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    private static DumpResult makeResult(Map<String, Long> rows, long bytes, long start) {
+        long nanos = System.nanoTime() - start;
+        return DumpResult.builder()
+                .rows(rows)
+                .bytes(bytes)
+                .millis(nanos / 1_000_000)
+                .megabytesPerSecond(nanos == 0 ? 0 : Math.round(bytes * 1e9 / nanos / 1024 / 1024 * 10) / 10.0)
+                .build();
+    }
+
+    private static double megabytes(long bytes) {
+        return Math.round(bytes / 1024.0 / 1024.0 * 10) / 10.0;
+    }
+
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        private FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
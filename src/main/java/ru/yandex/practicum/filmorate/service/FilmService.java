@@ -1,77 +1,194 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.executor.Bulkheads;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDao;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDao;
+import ru.yandex.practicum.filmorate.storage.search.FilmIndexes;
+import ru.yandex.practicum.filmorate.storage.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.search.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.search.SimilarFilmsIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_POPULAR_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+    private static final int MAX_SEARCH_SIZE = 100;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int MIN_RELEASE_YEAR = 1895;
+    private static final int MAX_RELEASE_YEAR = 9999;
+
     @Autowired
-    @Qualifier("filmDbStorage")
     private FilmStorage filmStorage;
 
     @Autowired
-    @Qualifier("userDbStorage")
     private UserStorage userStorage;
 
+    @Autowired
+    private GenreDao genreDao;
+
+    @Autowired
+    private MpaDao mpaDao;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @Autowired
+    private FilmIndexes filmIndexes;
+
+    @Autowired
+    private FilmSearchIndex searchIndex;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    @Autowired
+    private SimilarFilmsIndex similarFilmsIndex;
+
     public Film addFilm(Film film) {
-        return filmStorage.addFilm(film);
+        checkReferences(film);
+        Film added = filmStorage.addFilm(film);
+        versions.filmChanged(added.getId());
+        filmIndexes.put(added);
+        return added;
     }
 
     public Film updateFilm(Film film) {
-        return filmStorage.updateFilm(film);
+        checkReferences(film);
+        Film updated = filmStorage.updateFilm(film);
+        versions.filmChanged(updated.getId());
+        filmIndexes.update(updated);
+        return updated;
+    }
+
+    public void checkReferences(Film film) {
+        if (film.getMpa() != null) {
+            mpaDao.getMpaById(film.getMpa().getId());
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genreDao.getGenreById(genre.getId());
+            }
+        }
     }
 
     public List<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public List<Film> getFilms(Long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return filmStorage.getFilms(after == null ? 0 : after, pageSize);
+    }
+
+    public void forEachFilm(Consumer<Film> action) {
+        long after = 0;
+        List<Film> page;
+        do {
+            page = filmStorage.getFilms(after, MAX_PAGE_SIZE);
+            for (Film film : page) {
+                action.accept(film);
+                after = film.getId();
+            }
+        } while (page.size() == MAX_PAGE_SIZE);
+    }
+
     public Film getFilmById(Long id) {
         return filmStorage.getFilmById(id);
     }
 
     public Film addLike(Long id, Long userId) {
-        Film film = filmStorage.getFilmById(id);
-        Set<Long> likes = film.getLikes();
-        User user = userStorage.getUserById(userId);
-        likes.add(user.getId());
-        film.setLikes(likes);
-
-        filmStorage.updateFilm(film);
-        return film;
+        CompletableFuture<User> user = bulkheads.lookup(() -> userStorage.getUserById(userId));
+        filmStorage.getFilmById(id);
+        if (filmStorage.addLike(id, Bulkheads.await(user).getId())) {
+            versions.filmChanged(id);
+            filmIndexes.addLike(id, userId);
+        }
+        return filmStorage.getFilmById(id);
     }
 
     public Film deleteLike(Long id, Long userId) {
-        Film film = filmStorage.getFilmById(id);
-        Set<Long> likes = film.getLikes();
-        User user = userStorage.getUserById(userId);
-        if (!likes.contains(userId)) {
+        CompletableFuture<User> user = bulkheads.lookup(() -> userStorage.getUserById(userId));
+        filmStorage.getFilmById(id);
+        if (!filmStorage.deleteLike(id, Bulkheads.await(user).getId())) {
             throw new NotFoundException("лайк");
         }
-        likes.remove(user.getId());
-        film.setLikes(likes);
-        return film;
+        versions.filmChanged(id);
+        filmIndexes.deleteLike(id, userId);
+        return filmStorage.getFilmById(id);
     }
 
     public List<Film> getPopularFilms(Integer size) {
-        return filmStorage.getAllFilms().stream()
-                .sorted(this::compare)
-                .limit(size)
-                .collect(Collectors.toList());
+        return filmStorage.getPopularFilms(Math.max(1, Math.min(size, MAX_POPULAR_SIZE)));
+    }
+
+    public List<Film> getPopularFilms(Integer size, Integer genreId, Integer mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null) {
+            return getPopularFilms(size);
+        }
+        int count = Math.max(1, Math.min(size, MAX_POPULAR_SIZE));
+        if (genreId != null) {
+            genreDao.getGenreById(genreId);
+        }
+        if (mpaId != null) {
+            if (mpaId <= 0) {
+                throw new ValidationException(String.format("Некорректный рейтинг %d.", mpaId));
+            }
+            mpaDao.getMpaById(mpaId);
+        }
+        if (year != null && (year < MIN_RELEASE_YEAR || year > MAX_RELEASE_YEAR)) {
+            throw new ValidationException(String.format("Некорректный год %d.", year));
+        }
+        return filmStorage.getFilmsByIds(popularityIndex.getTop(count, genreId, mpaId, year));
+    }
+
+    public List<Film> searchFilms(String query, String by, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Пустой поисковый запрос.");
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : by.split(",")) {
+            try {
+                fields.add(FilmSearchIndex.Field.valueOf(field.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException(String.format("Неизвестное поле поиска %s.", field.trim()));
+            }
+        }
+        int size = limit == null ? DEFAULT_SEARCH_SIZE : Math.max(1, Math.min(limit, MAX_SEARCH_SIZE));
+        return filmStorage.getFilmsByIds(searchIndex.search(query, fields, size));
+    }
 
+    public List<Film> getSimilarFilms(Long id, Integer count) {
+        filmStorage.getFilmById(id);
+        int size = Math.max(1, Math.min(count, MAX_RECOMMENDATIONS));
+        return filmStorage.getFilmsByIds(similarFilmsIndex.getSimilar(id, size));
     }
 
-    public int compare(Film f1, Film f2) {
-        return f2.getLikes().size() - f1.getLikes().size();
+    public List<Film> getRecommendations(Long userId, Integer count) {
+        userStorage.getUserById(userId);
+        int size = Math.max(1, Math.min(count, MAX_RECOMMENDATIONS));
+        return filmStorage.getFilmsByIds(similarFilmsIndex.recommend(userId, size));
     }
 
 }
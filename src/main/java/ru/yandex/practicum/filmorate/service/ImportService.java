@@ -0,0 +1,245 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportChunk;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDao;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDao;
+import ru.yandex.practicum.filmorate.storage.search.FilmIndexes;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class ImportService {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final GenreDao genreDao;
+    private final MpaDao mpaDao;
+    private final Validator validator;
+    private final EntityVersions versions;
+    private final FilmIndexes filmIndexes;
+    private final FriendGraph friendGraph;
+    private final int chunkSize;
+
+    public ImportService(FilmStorage filmStorage, UserStorage userStorage, GenreDao genreDao, MpaDao mpaDao,
+                         Validator validator, EntityVersions versions, FilmIndexes filmIndexes,
+                         FriendGraph friendGraph,
+                         @Value("${filmorate.import.chunk-size}") int chunkSize) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.genreDao = genreDao;
+        this.mpaDao = mpaDao;
+        this.validator = validator;
+        this.versions = versions;
+        this.filmIndexes = filmIndexes;
+        this.friendGraph = friendGraph;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importFilms(List<Film> films) {
+        Set<Integer> genreIds = genreDao.getAllGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        Set<Integer> mpaIds = mpaDao.getAllMpa().stream().map(Mpa::getId).collect(Collectors.toSet());
+        Rows<Film> rows = new Rows<>(films.size());
+        for (Film film : films) {
+            String error = validate(film);
+            if (error == null && (film.getMpa() == null || !mpaIds.contains(film.getMpa().getId()))) {
+                error = "неизвестный рэйтинг";
+            }
+            if (error == null && film.getGenres() != null && film.getGenres().stream()
+                    .anyMatch(genre -> !genreIds.contains(genre.getId()))) {
+                error = "неизвестный жанр";
+            }
+            rows.add(film, error);
+        }
+        List<Long> ids = new ArrayList<>();
+        return importInChunks("фильмов", rows, ids, chunk -> {
+            List<Long> chunkIds = filmStorage.addFilms(chunk);
+            versions.filmsChanged(chunkIds);
+            for (int i = 0; i < chunkIds.size(); i++) {
+                filmIndexes.put(chunk.get(i).toBuilder().id(chunkIds.get(i)).build());
+            }
+            ids.addAll(chunkIds);
+            return chunkIds.size();
+        });
+    }
+
+    public ImportResult importUsers(List<User> users) {
+        Rows<User> rows = new Rows<>(users.size());
+        for (User user : users) {
+            rows.add(user, validate(user));
+        }
+        List<Long> ids = new ArrayList<>();
+        return importInChunks("пользователей", rows, ids, chunk -> {
+            List<Long> chunkIds = userStorage.addUsers(chunk);
+            versions.usersChanged(chunkIds);
+            ids.addAll(chunkIds);
+            return chunkIds.size();
+        });
+    }
+
+    public ImportResult importLikes(List<Like> likes) {
+        LongIdSet films = findExisting(likes, Like::getFilmId, filmStorage::getExistingIds);
+        LongIdSet users = findExisting(likes, Like::getUserId, userStorage::getExistingIds);
+        Rows<Like> rows = new Rows<>(likes.size());
+        for (Like like : likes) {
+            String error = null;
+            if (like.getFilmId() == null || !films.containsId(like.getFilmId())) {
+                error = String.format("фильм %d не найден", like.getFilmId());
+            } else if (like.getUserId() == null || !users.containsId(like.getUserId())) {
+                error = String.format("пользователь %d не найден", like.getUserId());
+            }
+            rows.add(like, error);
+        }
+        List<Like> imported = new ArrayList<>(rows.valid.size());
+        try {
+            return importInChunks("лайков", rows, null, chunk -> {
+                int added = filmStorage.importLikes(chunk);
+                imported.addAll(chunk);
+                return added;
+            });
+        } finally {
+            List<Long> filmIds = imported.stream().map(Like::getFilmId).distinct().collect(Collectors.toList());
+            Map<Long, Integer> likeCounts = new HashMap<>();
+            for (int from = 0; from < filmIds.size(); from += chunkSize) {
+                List<Long> slice = filmIds.subList(from, Math.min(filmIds.size(), from + chunkSize));
+                filmStorage.recountLikes(slice);
+                likeCounts.putAll(filmStorage.getLikeCounts(slice));
+            }
+            versions.filmsChanged(filmIds);
+            filmIndexes.importLikes(imported, likeCounts);
+        }
+    }
+
+    public ImportResult importFriendships(List<Friendship> friendships) {
+        LongIdSet users = findExisting(friendships, Friendship::getUserId, userStorage::getExistingIds);
+        LongIdSet friends = findExisting(friendships, Friendship::getFriendId, userStorage::getExistingIds);
+        Rows<Friendship> rows = new Rows<>(friendships.size());
+        for (Friendship friendship : friendships) {
+            String error = null;
+            if (friendship.getUserId() == null || !users.containsId(friendship.getUserId())) {
+                error = String.format("пользователь %d не найден", friendship.getUserId());
+            } else if (friendship.getFriendId() == null || !friends.containsId(friendship.getFriendId())) {
+                error = String.format("друг %d не найден", friendship.getFriendId());
+            } else if (friendship.getUserId().equals(friendship.getFriendId())) {
+                error = "пользователь не может дружить сам с собой";
+            }
+            rows.add(friendship, error);
+        }
+        return importInChunks("друзей", rows, null, chunk -> {
+            int added = userStorage.addFriendships(chunk);
+            versions.usersChanged(chunk.stream().map(Friendship::getUserId).collect(Collectors.toSet()));
+            friendGraph.addFriendships(chunk);
+            return added;
+        });
+    }
+
+    private <T> String validate(T row) {
+        Set<ConstraintViolation<T>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private <T> LongIdSet findExisting(List<T> rows, Function<T, Long> id,
+                                       Function<Collection<Long>, LongIdSet> finder) {
+        LongIdSet ids = new LongIdSet();
+        for (T row : rows) {
+            if (id.apply(row) != null) {
+                ids.addId(id.apply(row));
+            }
+        }
+        List<Long> allIds = new ArrayList<>(ids);
+        LongIdSet existing = new LongIdSet(ids.size());
+        for (int from = 0; from < allIds.size(); from += chunkSize) {
+            List<Long> slice = allIds.subList(from, Math.min(allIds.size(), from + chunkSize));
+            for (long existingId : finder.apply(slice).toLongArray()) {
+                existing.addId(existingId);
+            }
+        }
+        return existing;
+    }
+
+    private <T> ImportResult importInChunks(String name, Rows<T> rows, List<Long> ids,
+                                            ToIntFunction<List<T>> writer) {
+        List<ImportChunk> chunks = new ArrayList<>();
+        int imported = 0;
+        int failed = rows.invalid;
+        for (int offset = 0, index = 0; offset < rows.valid.size(); offset += chunkSize, index++) {
+            List<T> chunk = rows.valid.subList(offset, Math.min(rows.valid.size(), offset + chunkSize));
+            ImportChunk.ImportChunkBuilder report = ImportChunk.builder()
+                    .index(index)
+                    .offset(offset)
+                    .size(chunk.size());
+            long start = System.currentTimeMillis();
+            try {
+                int written = writer.applyAsInt(chunk);
+                imported += written;
+                report.imported(written);
+            } catch (DataAccessException e) {
+                failed += chunk.size();
+                report.error(e.getMostSpecificCause().getMessage());
+                log.warn("Пакет {} импорта {} не сохранён: {}", index, name, e.getMostSpecificCause().getMessage());
+            }
+            chunks.add(report.millis(System.currentTimeMillis() - start).build());
+            log.info("Импорт {}: обработано {} из {}.", name, offset + chunk.size(), rows.valid.size());
+        }
+        return ImportResult.builder()
+                .total(rows.total)
+                .imported(imported)
+                .skipped(rows.total - imported - failed)
+                .failed(failed)
+                .ids(ids)
+                .errors(rows.errors)
+                .chunks(chunks)
+                .build();
+    }
+
+    private static class Rows<T> {
+        private final int total;
+        private final List<T> valid;
+        private final List<String> errors = new ArrayList<>();
+        private int invalid;
+
+        private Rows(int total) {
+            this.total = total;
+            this.valid = new ArrayList<>(total);
+        }
+
+        private void add(T row, String error) {
+            if (error == null) {
+                valid.add(row);
+                return;
+            }
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(String.format("Строка %d: %s", valid.size() + invalid, error));
+            }
+            invalid++;
+        }
+    }
+}
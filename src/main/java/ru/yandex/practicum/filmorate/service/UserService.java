@@ -1,109 +1,126 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NoFriendsException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.executor.Bulkheads;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 100;
+
     @Autowired
-    @Qualifier("userDbStorage")
     private UserStorage storage;
 
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
     public User addUser(User user) {
-        return storage.addUser(user);
+        User added = storage.addUser(user);
+        versions.userChanged(added.getId());
+        return added;
     }
 
     public User updateUser(User user) {
-        return storage.updateUser(user);
+        User updated = storage.updateUser(user);
+        versions.userChanged(updated.getId());
+        friendGraph.put(updated);
+        return updated;
     }
 
     public List<User> getAllUsers() {
         return storage.getAllUsers();
     }
 
+    public List<User> getUsers(Long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return storage.getUsers(after == null ? 0 : after, pageSize);
+    }
+
+    public void forEachUser(Consumer<User> action) {
+        long after = 0;
+        List<User> page;
+        do {
+            page = storage.getUsers(after, MAX_PAGE_SIZE);
+            for (User user : page) {
+                action.accept(user);
+                after = user.getId();
+            }
+        } while (page.size() == MAX_PAGE_SIZE);
+    }
+
     public User getUserById(Long id) {
         return storage.getUserById(id);
     }
 
     public User addFriend(Long id, Long friendId) {
-        User user = storage.getUserById(id);
-        storage.getUserById(friendId);
-        return storage.updateUser(addFriendIdToUser(user, friendId));
-    }
-
-    public User addFriendIdToUser(User user, Long id) {
-        Set<Long> friends = user.getFriends();
-        if (friends == null) {
-            friends = new HashSet<Long>();
+        CompletableFuture<User> friend = bulkheads.lookup(() -> storage.getUserById(friendId));
+        storage.getUserById(id);
+        Bulkheads.await(friend);
+        if (storage.addFriend(id, friendId)) {
+            versions.userChanged(id);
+            friendGraph.addFriend(id, friendId);
         }
-        friends.add(id);
-        user.setFriends(friends);
-        return user;
+        return storage.getUserById(id);
     }
 
     public User deleteFriend(Long id, Long friendId) {
         User user = storage.getUserById(id);
-        return storage.updateUser(deleteFriendIdFromUser(user, friendId));
-    }
-
-    public User deleteFriendIdFromUser(User user, Long id) {
-        Set<Long> friends = user.getFriends();
-        if (friends == null) {
+        if (user.getFriends() == null) {
             throw new NoFriendsException(user.getId());
         }
-        if (friends.contains(id)) {
-            friends.remove(id);
-            user.setFriends(friends);
-            return user;
-        } else {
+        if (!storage.deleteFriend(id, friendId)) {
             throw new NotFoundException("друг");
         }
+        versions.userChanged(id);
+        friendGraph.deleteFriend(id, friendId);
+        return storage.getUserById(id);
     }
 
     public List<User> getUserFriends(Long id) {
         User user = storage.getUserById(id);
-        Set<Long> friendsId = user.getFriends();
-        List<User> friends = new ArrayList<>();
-        for (Long friendId : friendsId) {
-            friends.add(storage.getUserById(friendId));
-        }
-        return friends;
+        return storage.getUsersByIds(user.getFriends());
     }
 
     public List<User> getCommonFriends(Long id, Long otherId) {
-        List<User> commonFriends = new ArrayList<>();
-        Set<Long> friendsId = storage.getUserById(id).getFriends();
-        Set<Long> otherFriendsId = storage.getUserById(otherId).getFriends();
-        if (friendsId == null || otherFriendsId == null) {
-            return commonFriends;
-        }
-        for (Long commonFriendId : findCommon(friendsId, otherFriendsId)) {
-            commonFriends.add(storage.getUserById(commonFriendId));
-        }
-        return commonFriends;
+        return storage.getCommonFriends(id, otherId);
+    }
+
+    public List<User> getSuggestions(Long id, Integer limit) {
+        storage.getUserById(id);
+        List<Long> ids = friendGraph.suggest(id, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+        Map<Long, User> users = storage.getUsersByIds(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     public Set<Long> findCommon(Set<Long> setA, Set<Long> setB) {
-        Set<Long> smallSet;
-        Set<Long> bigSet;
-        if (setA.size() <= setB.size()) {
-            smallSet = new HashSet<>(setA);
-            bigSet = new HashSet<>(setB);
-        } else {
-            smallSet = new HashSet<>(setB);
-            bigSet = new HashSet<>(setA);
-        }
-        smallSet.removeIf(id -> !bigSet.contains(id));
-        return smallSet;
+        return LongIdSet.copyOf(setA).intersect(LongIdSet.copyOf(setB));
     }
 }
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+@Component
+public class EntityCaches {
+
+    private final Cache<Long, Film> films;
+    private final Cache<Long, User> users;
+
+    public EntityCaches(@Value("${filmorate.cache.films.maximum-size}") long filmsMaximumSize,
+                        @Value("${filmorate.cache.films.expire-after-write}") Duration filmsExpireAfterWrite,
+                        @Value("${filmorate.cache.users.maximum-size}") long usersMaximumSize,
+                        @Value("${filmorate.cache.users.expire-after-write}") Duration usersExpireAfterWrite) {
+        this.films = build(filmsMaximumSize, filmsExpireAfterWrite);
+        this.users = build(usersMaximumSize, usersExpireAfterWrite);
+    }
+
+    public Cache<Long, Film> films() {
+        return films;
+    }
+
+    public Cache<Long, User> users() {
+        return users;
+    }
+
+    public Film getFilm(Long id, Function<Long, Film> loader) {
+        return copyOf(films.get(id, key -> freeze(loader.apply(key))));
+    }
+
+    public Map<Long, Film> getAllPresentFilms(Iterable<Long> ids) {
+        Map<Long, Film> present = new HashMap<>();
+        films.getAllPresent(ids).forEach((id, film) -> present.put(id, copyOf(film)));
+        return present;
+    }
+
+    public User getUser(Long id, Function<Long, User> loader) {
+        return copyOf(users.get(id, key -> freeze(loader.apply(key))));
+    }
+
+    public Map<Long, User> getAllPresentUsers(Iterable<Long> ids) {
+        Map<Long, User> present = new HashMap<>();
+        users.getAllPresent(ids).forEach((id, user) -> present.put(id, copyOf(user)));
+        return present;
+    }
+
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        films.invalidateAll();
+        users.invalidateAll();
+    }
+
+    public List<CacheStatistics> getStatistics() {
+        return List.of(makeStatistics("films", films), makeStatistics("users", users));
+    }
+
+    private static Film freeze(Film film) {
+        film.setLikes(freeze(film.getLikes()));
+        film.setGenres(film.getGenres() == null ? null : Collections.unmodifiableSet(film.getGenres()));
+        return film;
+    }
+
+    private static User freeze(User user) {
+        user.setFriends(freeze(user.getFriends()));
+        return user;
+    }
+
+    private static Set<Long> freeze(Set<Long> ids) {
+        if (ids == null) {
+            return null;
+        }
+        return ids instanceof LongIdSet ? ((LongIdSet) ids).freeze() : Collections.unmodifiableSet(ids);
+    }
+
+    private static Film copyOf(Film film) {
+        return film.toBuilder().build();
+    }
+
+    private static User copyOf(User user) {
+        return user.toBuilder().build();
+    }
+
+    private static <V> Cache<Long, V> build(long maximumSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    private static CacheStatistics makeStatistics(String name, Cache<Long, ?> cache) {
+        CacheStats stats = cache.stats();
+        return CacheStatistics.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .evictionCount(stats.evictionCount())
+                .hitRate(stats.hitRate())
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class EntityVersions {
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis() << 16);
+    private final Map<Long, Long> films = new ConcurrentHashMap<>();
+    private final Map<Long, Long> users = new ConcurrentHashMap<>();
+    private final String referenceTag = tag(clock.get());
+
+    private final AtomicLong filmList = new AtomicLong(clock.get());
+    private final AtomicLong userList = new AtomicLong(clock.get());
+
+    private volatile long base = clock.get();
+
+    public String filmTag(long id) {
+        return tagOf(films.get(id));
+    }
+
+    public String userTag(long id) {
+        return tagOf(users.get(id));
+    }
+
+    public long base() {
+        return base;
+    }
+
+    public String filmLoaded(long id, long loadedBase) {
+        return loaded(films, id, loadedBase);
+    }
+
+    public String userLoaded(long id, long loadedBase) {
+        return loaded(users, id, loadedBase);
+    }
+
+    public String filmListTag() {
+        return tag(filmList.get());
+    }
+
+    public String userListTag() {
+        return tag(userList.get());
+    }
+
+    public String referenceTag() {
+        return referenceTag;
+    }
+
+    public void filmChanged(long id) {
+        long version = clock.incrementAndGet();
+        films.merge(id, version, Math::max);
+        filmList.accumulateAndGet(version, Math::max);
+    }
+
+    public void filmsChanged(Collection<Long> ids) {
+        long version = clock.incrementAndGet();
+        for (Long id : ids) {
+            films.merge(id, version, Math::max);
+        }
+        filmList.accumulateAndGet(version, Math::max);
+    }
+
+    public void userChanged(long id) {
+        long version = clock.incrementAndGet();
+        users.merge(id, version, Math::max);
+        userList.accumulateAndGet(version, Math::max);
+    }
+
+    public void usersChanged(Collection<Long> ids) {
+        long version = clock.incrementAndGet();
+        for (Long id : ids) {
+            users.merge(id, version, Math::max);
+        }
+        userList.accumulateAndGet(version, Math::max);
+    }
+
+    public void invalidateAll() {
+        long version = clock.incrementAndGet();
+        base = version;
+        films.clear();
+        users.clear();
+        filmList.accumulateAndGet(version, Math::max);
+        userList.accumulateAndGet(version, Math::max);
+    }
+
+    private String loaded(Map<Long, Long> versions, long id, long loadedBase) {
+        Long version = versions.putIfAbsent(id, loadedBase);
+        if (version == null && base != loadedBase) {
+            versions.remove(id, loadedBase);
+            return null;
+        }
+        return version == null || version == loadedBase ? tag(loadedBase) : null;
+    }
+
+    private static String tagOf(Long version) {
+        return version == null ? null : tag(version);
+    }
+
+    private static String tag(long version) {
+        return "\"" + Long.toHexString(version) + "\"";
+    }
+}
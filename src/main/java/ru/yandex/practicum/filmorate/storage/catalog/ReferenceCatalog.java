@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+@Slf4j
+@Component
+public class ReferenceCatalog {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Snapshot snapshot;
+
+    public ReferenceCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genres = jdbcTemplate.query("select * from genre order by genre_id",
+                (rs, rowNum) -> makeGenre(rs));
+        List<Mpa> mpa = jdbcTemplate.query("select * from mpa order by mpa_id",
+                (rs, rowNum) -> makeMpa(rs));
+        snapshot = new Snapshot(genres, mpa);
+        log.info("Справочники загружены: жанров {}, рейтингов {}.", genres.size(), mpa.size());
+    }
+
+    public Genre getGenre(Integer id) {
+        Genre[] genres = snapshot.genresById;
+        if (id == null || id < 0 || id >= genres.length) {
+            return null;
+        }
+        return genres[id];
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot.genres;
+    }
+
+    public Mpa getMpa(Integer id) {
+        Mpa[] mpa = snapshot.mpaById;
+        if (id == null || id < 0 || id >= mpa.length) {
+            return null;
+        }
+        return mpa[id];
+    }
+
+    public List<Mpa> getAllMpa() {
+        return snapshot.mpa;
+    }
+
+    public Genre makeGenre(ResultSet rs) throws SQLException {
+        int id = rs.getInt("genre_id");
+        String name = rs.getString("name");
+
+        return new Genre(id, name);
+    }
+
+    public Mpa makeMpa(ResultSet rs) throws SQLException {
+        int id = rs.getInt("mpa_id");
+        String name = rs.getString("mpa_name");
+
+        return new Mpa(id, name);
+    }
+
+    private static final class Snapshot {
+        private final List<Genre> genres;
+        private final Genre[] genresById;
+        private final List<Mpa> mpa;
+        private final Mpa[] mpaById;
+
+        private Snapshot(List<Genre> genres, List<Mpa> mpa) {
+            this.genres = Collections.unmodifiableList(genres);
+            this.mpa = Collections.unmodifiableList(mpa);
+            this.genresById = new Genre[genres.isEmpty() ? 0 : genres.get(genres.size() - 1).getId() + 1];
+            for (Genre genre : genres) {
+                genresById[genre.getId()] = genre;
+            }
+            this.mpaById = new Mpa[mpa.isEmpty() ? 0 : mpa.get(mpa.size() - 1).getId() + 1];
+            for (Mpa rating : mpa) {
+                mpaById[rating.getId()] = rating;
+            }
+        }
+    }
+}
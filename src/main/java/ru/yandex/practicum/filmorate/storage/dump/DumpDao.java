@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.storage.dump;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+public interface DumpDao {
+
+    public Map<String, Long> exportTables(Writer out) throws IOException;
+
+    public Map<String, Long> restoreTables(BufferedReader in) throws IOException;
+
+    public void restartIdentities();
+}
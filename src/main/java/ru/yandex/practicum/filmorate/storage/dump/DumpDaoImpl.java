@@ -0,0 +1,288 @@
+package ru.yandex.practicum.filmorate.storage.dump;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+@Component
+public class DumpDaoImpl implements DumpDao {
+
+    static final String HEADER = "filmorate-dump\t1";
+
+    private static final String NULL = "\\N";
+
+    private static final List<Table> TABLES = List.of(
+            new Table("users", "user_id", "user_id", "email", "name", "login", "birthday"),
+            new Table("film", "film_id", "film_id", "name", "description", "release_date", "duration", "mpa_id",
+                    "like_count"),
+            new Table("film_genre", "film_id, genre_id", "film_id", "genre_id"),
+            new Table("likes", "film_id, user_id", "film_id", "user_id"),
+            new Table("friends", "user_id, friend_id", "user_id", "friend_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    public DumpDaoImpl(JdbcTemplate jdbcTemplate, @Value("${filmorate.dump.batch-size}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<String, Long> exportTables(Writer out) throws IOException {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        out.write(HEADER);
+        out.write('\n');
+        for (Table table : TABLES) {
+            out.write('@');
+            out.write(table.name);
+            for (String column : table.columns) {
+                out.write('\t');
+                out.write(column);
+            }
+            out.write('\n');
+            long[] count = {0};
+            try {
+                jdbcTemplate.query("SELECT " + String.join(", ", table.columns) + " FROM " + table.name +
+                        " ORDER BY " + table.order, rs -> {
+                    try {
+                        for (int i = 1; i <= table.columns.size(); i++) {
+                            if (i > 1) {
+                                out.write('\t');
+                            }
+                            writeValue(out, rs.getString(i), i == 1);
+                        }
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rows.put(table.name, count[0]);
+        }
+        out.flush();
+        return rows;
+    }
+
+    @Override
+    @Transactional(rollbackFor = IOException.class)
+    public Map<String, Long> restoreTables(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (!HEADER.equals(line)) {
+            throw new ValidationException("Неизвестный формат выгрузки.");
+        }
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            jdbcTemplate.update("DELETE FROM " + TABLES.get(i).name);
+        }
+        Map<String, Long> rows = new LinkedHashMap<>();
+        Set<String> restoredColumns = new HashSet<>();
+        Section section = null;
+        long lineNumber = 1;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith("@")) {
+                if (section != null) {
+                    section.flush();
+                }
+                section = openSection(line, lineNumber);
+                for (String column : section.columns) {
+                    restoredColumns.add(section.table.name + "." + column);
+                }
+                rows.putIfAbsent(section.table.name, 0L);
+                continue;
+            }
+            if (section == null) {
+                throw new ValidationException(String.format("Строка %d: данные вне раздела.", lineNumber));
+            }
+            section.add(parseRow(line, section.columns.length, lineNumber));
+            rows.merge(section.table.name, 1L, Long::sum);
+        }
+        if (section != null) {
+            section.flush();
+        }
+        if (!restoredColumns.contains("film.like_count")) {
+            jdbcTemplate.update("UPDATE film AS f " +
+                    "SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id)");
+        }
+        return rows;
+    }
+
+    @Override
+    public void restartIdentities() {
+        restartIdentity("users", "user_id");
+        restartIdentity("film", "film_id");
+    }
+
+    private Section openSection(String line, long lineNumber) {
+        String[] parts = line.substring(1).split("\t");
+        Table table = TABLES.stream()
+                .filter(t -> t.name.equals(parts[0]))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException(
+                        String.format("Строка %d: неизвестная таблица %s.", lineNumber, parts[0])));
+        String[] columns = Arrays.copyOfRange(parts, 1, parts.length);
+        if (columns.length == 0) {
+            throw new ValidationException(String.format("Строка %d: не указаны колонки.", lineNumber));
+        }
+        for (String column : columns) {
+            if (!table.columns.contains(column)) {
+                throw new ValidationException(
+                        String.format("Строка %d: неизвестная колонка %s.%s.", lineNumber, table.name, column));
+            }
+        }
+        return new Section(table, columns);
+    }
+
+    private void restartIdentity(String table, String column) {
+        Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table,
+                Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + next);
+    }
+
+    static void writeValue(Writer out, String value, boolean first) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        if (first && value.startsWith("@")) {
+            out.write('\\');
+        }
+        int plain = 0;
+        while (plain < value.length() && !needsEscape(value.charAt(plain))) {
+            plain++;
+        }
+        if (plain == value.length()) {
+            out.write(value);
+            return;
+        }
+        out.write(value, 0, plain);
+        for (int i = plain; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+    static Object[] parseRow(String line, int columns, long lineNumber) {
+        Object[] values = new Object[columns];
+        int start = 0;
+        for (int column = 0; column < columns; column++) {
+            int end = line.indexOf('\t', start);
+            if (end < 0 != (column == columns - 1)) {
+                throw new ValidationException(
+                        String.format("Строка %d: ожидалось колонок %d.", lineNumber, columns));
+            }
+            if (end < 0) {
+                end = line.length();
+            }
+            values[column] = readValue(line, start, end);
+            start = end + 1;
+        }
+        return values;
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '\\' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static String readValue(String line, int start, int end) {
+        if (end - start == 2 && line.startsWith(NULL, start)) {
+            return null;
+        }
+        int escape = line.indexOf('\\', start);
+        if (escape < 0 || escape >= end) {
+            return line.substring(start, end);
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        value.append(line, start, escape);
+        for (int i = escape; i < end; i++) {
+            char c = line.charAt(i);
+            if (c != '\\' || i + 1 == end) {
+                value.append(c);
+                continue;
+            }
+            char next = line.charAt(++i);
+            switch (next) {
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                default:
+                    value.append(next);
+            }
+        }
+        return value.toString();
+    }
+
+    private static final class Table {
+        private final String name;
+        private final String order;
+        private final List<String> columns;
+
+        private Table(String name, String order, String... columns) {
+            this.name = name;
+            this.order = order;
+            this.columns = List.of(columns);
+        }
+    }
+
+    private final class Section {
+        private final Table table;
+        private final String[] columns;
+        private final String sql;
+        private final List<Object[]> batch = new ArrayList<>();
+
+        private Section(Table table, String[] columns) {
+            this.table = table;
+            this.columns = columns;
+            this.sql = "INSERT INTO " + table.name + " (" + String.join(", ", columns) + ") VALUES (" +
+                    String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+        }
+
+        private void add(Object[] row) {
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceCatalog;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
@@ -19,18 +28,35 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component("filmDbStorage")
+@Profile("!inmemory")
 public class FilmDbStorage implements FilmStorage {
 
+    private static final String NEW_LIKES = "SELECT DISTINCT t.film_id, t.user_id " +
+            "FROM UNNEST(?, ?) AS t(film_id, user_id) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes AS l WHERE l.film_id = t.film_id AND l.user_id = t.user_id)";
+
     JdbcTemplate jdbcTemplate;
 
+    private final ReferenceCatalog catalog;
+
+    private final Cache<Long, Film> cache;
+
+    private final EntityCaches entityCaches;
+
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, ReferenceCatalog catalog, EntityCaches entityCaches) {
         this.jdbcTemplate = jdbcTemplate;
+        this.catalog = catalog;
+        this.cache = entityCaches.films();
+        this.entityCaches = entityCaches;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         String sql = "INSERT INTO film (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
 
@@ -47,10 +73,11 @@ public class FilmDbStorage implements FilmStorage {
         }, keyHolder);
         film.setId(keyHolder.getKey().longValue());
         updateFilmGenre(film);
-        return getFilmById(film.getId());
+        return makeStoredFilm(film, new LongIdSet());
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
         SqlRowSet userRows = jdbcTemplate.queryForRowSet("select * from film where film_id = ?", film.getId());
         if (userRows.next()) {
@@ -64,7 +91,8 @@ public class FilmDbStorage implements FilmStorage {
                     film.getId());
             updateFilmGenre(film);
             updateFilmLikes(film);
-            return getFilmById(film.getId());
+            EntityCaches.afterCommit(() -> cache.invalidate(film.getId()));
+            return makeStoredFilm(film, LongIdSet.copyOf(film.getLikes()));
         } else {
             throw new NotFoundException("фильм");
         }
@@ -72,43 +100,284 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Film getFilmById(Long id) {
-        String sql = "SELECT f.*, " +
-                            "m.mpa_name, " +
-                            "GROUP_CONCAT(g.genre_id) AS genre_id, " +
-                            "GROUP_CONCAT(g.name) AS genre_name, " +
-                            "GROUP_CONCAT(l.user_id) AS user_id " +
-                "FROM film AS f " +
-                "LEFT OUTER JOIN mpa AS m ON f.mpa_id = m.mpa_id " +
-                "LEFT OUTER JOIN film_genre AS fg ON f.film_id = fg.film_id " +
-                "LEFT OUTER JOIN genre AS g ON fg.genre_id = g.genre_id " +
-                "LEFT OUTER JOIN likes AS l ON f.film_id = l.film_id " +
-                "WHERE f.film_id = ? " +
-                "GROUP BY f.film_id";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> makeFilm(rs), id);
-        } catch (EmptyResultDataAccessException | NullPointerException e) {
+        return entityCaches.getFilm(id, this::loadFilmById);
+    }
+
+    private Film loadFilmById(Long id) {
+        List<Film> films = queryFilms("WHERE f.film_id = ?", id);
+        if (films.isEmpty()) {
             throw new NotFoundException("фильм");
         }
+        setGenresAndLikes(films, "WHERE film_id = ?", id);
+        return films.get(0);
     }
 
     @Override
     public List<Film> getAllFilms() {
-        String sql = "SELECT f.*, " +
-                            "m.mpa_name, " +
-                            "GROUP_CONCAT(g.genre_id) AS genre_id, " +
-                            "GROUP_CONCAT(g.name) AS genre_name, " +
-                            "GROUP_CONCAT(l.user_id) AS user_id " +
-                "FROM film as f " +
-                "LEFT OUTER JOIN mpa as m ON f.mpa_id = m.mpa_id " +
-                "LEFT OUTER JOIN film_genre as fg ON f.film_id = fg.film_id " +
-                "LEFT OUTER JOIN genre as g ON fg.genre_id = g.genre_id " +
-                "LEFT OUTER JOIN likes as l ON f.film_id = l.film_id " +
-                "GROUP BY f.film_id";
-        try {
-            return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs));
-        } catch (EmptyResultDataAccessException e) {
+        List<Film> films = queryFilms("ORDER BY f.film_id");
+        setGenresAndLikes(films, "");
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        List<Film> films = queryFilms("WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?", after, limit);
+        if (!films.isEmpty()) {
+            Object[] idArray = films.stream().map(Film::getId).toArray();
+            setGenresAndLikes(films, "WHERE film_id = ANY(?)", (Object) idArray);
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return getFilmsByIds(getPopularFilmIds(count));
+    }
+
+    public List<Long> getPopularFilmIds(int count) {
+        return jdbcTemplate.queryForList("SELECT film_id FROM film ORDER BY like_count DESC, film_id LIMIT ?",
+                Long.class, count);
+    }
+
+    public boolean hasLike(long filmId, long userId) {
+        List<Boolean> liked = jdbcTemplate.queryForList("SELECT EXISTS(SELECT 1 FROM likes " +
+                "WHERE film_id = f.film_id AND user_id = ?) FROM film AS f WHERE f.film_id = ?", Boolean.class,
+                userId, filmId);
+        if (liked.isEmpty()) {
             throw new NotFoundException("фильм");
         }
+        return liked.get(0);
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(Long filmId, Long userId) {
+        try {
+            jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        jdbcTemplate.update("UPDATE film SET like_count = like_count + 1 WHERE film_id = ?", filmId);
+        EntityCaches.afterCommit(() -> cache.invalidate(filmId));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteLike(Long filmId, Long userId) {
+        if (jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update("UPDATE film SET like_count = like_count - 1 WHERE film_id = ?", filmId);
+        EntityCaches.afterCommit(() -> cache.invalidate(filmId));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> addFilms(List<Film> films) {
+        String sql = "INSERT INTO film (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    stmt.setString(1, film.getName());
+                    stmt.setString(2, film.getDescription());
+                    stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    stmt.setInt(4, film.getDuration());
+                    stmt.setInt(5, film.getMpa().getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                List<Long> keys = new ArrayList<>(films.size());
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids.size() != films.size()) {
+            throw new IncorrectResultSizeDataAccessException(String.format(
+                    "Драйвер вернул %d сгенерированных ключей для пакета из %d строк.", ids.size(), films.size()),
+                    films.size(), ids.size());
+        }
+        List<long[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    filmGenres.add(new long[]{ids.get(i), genre.getId()});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO film_genre (film_id, genre_id) KEY (film_id, genre_id) VALUES (?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, filmGenres.get(i)[0]);
+                        ps.setLong(2, filmGenres.get(i)[1]);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return filmGenres.size();
+                    }
+                });
+        return ids;
+    }
+
+    @Override
+    @Transactional
+    public int addLikes(List<Like> likes) {
+        if (likes.isEmpty()) {
+            return 0;
+        }
+        Long[] filmIds = likes.stream().map(Like::getFilmId).toArray(Long[]::new);
+        Long[] userIds = likes.stream().map(Like::getUserId).toArray(Long[]::new);
+        jdbcTemplate.update("MERGE INTO film AS f USING (SELECT film_id, COUNT(*) AS added FROM (" + NEW_LIKES + ") " +
+                "GROUP BY film_id) AS d ON f.film_id = d.film_id " +
+                "WHEN MATCHED THEN UPDATE SET like_count = f.like_count + d.added", filmIds, userIds);
+        return insertLikes(filmIds, userIds);
+    }
+
+    @Override
+    @Transactional
+    public int importLikes(List<Like> likes) {
+        if (likes.isEmpty()) {
+            return 0;
+        }
+        return insertLikes(likes.stream().map(Like::getFilmId).toArray(Long[]::new),
+                likes.stream().map(Like::getUserId).toArray(Long[]::new));
+    }
+
+    private int insertLikes(Long[] filmIds, Long[] userIds) {
+        int inserted = jdbcTemplate.update("INSERT INTO likes (film_id, user_id) " + NEW_LIKES, filmIds, userIds);
+        Set<Long> changedFilms = new HashSet<>(Arrays.asList(filmIds));
+        EntityCaches.afterCommit(() -> cache.invalidateAll(changedFilms));
+        return inserted;
+    }
+
+    @Override
+    public void recountLikes(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("UPDATE film AS f " +
+                    "SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id) " +
+                    "WHERE f.film_id = ANY(?)", (Object) ids.toArray());
+        }
+    }
+
+    @Override
+    @Transactional
+    public int deleteLikes(List<Like> likes) {
+        int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, likes.get(i).getFilmId());
+                        ps.setLong(2, likes.get(i).getUserId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return likes.size();
+                    }
+                });
+        return updateLikeCounts(likes, deleted, -1);
+    }
+
+    private int updateLikeCounts(List<Like> likes, int[] changed, int sign) {
+        Map<Long, Integer> likesByFilm = new TreeMap<>();
+        int total = 0;
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i] > 0) {
+                likesByFilm.merge(likes.get(i).getFilmId(), changed[i], Integer::sum);
+                total += changed[i];
+            }
+        }
+        List<Map.Entry<Long, Integer>> counts = new ArrayList<>(likesByFilm.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE film SET like_count = like_count + ? WHERE film_id = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, sign * counts.get(i).getValue());
+                        ps.setLong(2, counts.get(i).getKey());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return counts.size();
+                    }
+                });
+        EntityCaches.afterCommit(() -> cache.invalidateAll(likesByFilm.keySet()));
+        return total;
+    }
+
+    @Override
+    public LongIdSet getExistingIds(Collection<Long> ids) {
+        LongIdSet existingIds = new LongIdSet();
+        if (!ids.isEmpty()) {
+            jdbcTemplate.query("SELECT film_id FROM film WHERE film_id = ANY(?)",
+                    rs -> {
+                        existingIds.addId(rs.getLong("film_id"));
+                    }, (Object) ids.toArray());
+        }
+        return existingIds;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts(Collection<Long> ids) {
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        if (!ids.isEmpty()) {
+            jdbcTemplate.query("SELECT film_id, like_count FROM film WHERE film_id = ANY(?)",
+                    rs -> {
+                        likeCounts.put(rs.getLong("film_id"), rs.getInt("like_count"));
+                    }, (Object) ids.toArray());
+        }
+        return likeCounts;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Film> filmsById = entityCaches.getAllPresentFilms(ids);
+        Object[] missingIds = ids.stream().filter(id -> !filmsById.containsKey(id)).toArray();
+        if (missingIds.length > 0) {
+            List<Film> films = queryFilms("WHERE f.film_id = ANY(?)", (Object) missingIds);
+            setGenresAndLikes(films, "WHERE film_id = ANY(?)", (Object) missingIds);
+            filmsById.putAll(films.stream().collect(Collectors.toMap(Film::getId, Function.identity())));
+        }
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<Film> queryFilms(String condition, Object... args) {
+        String sql = "SELECT f.* FROM film AS f " + condition;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), args);
+    }
+
+    private void setGenresAndLikes(List<Film> films, String filmCondition, Object... args) {
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre " + filmCondition, rs -> {
+            Film film = filmsById.get(rs.getLong("film_id"));
+            Genre genre = catalog.getGenre(rs.getInt("genre_id"));
+            if (film != null && genre != null) {
+                film.getGenres().add(genre);
+            }
+        }, args);
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes " + filmCondition, rs -> {
+            Film film = filmsById.get(rs.getLong("film_id"));
+            if (film != null) {
+                ((LongIdSet) film.getLikes()).addId(rs.getLong("user_id"));
+            }
+        }, args);
     }
 
     public void updateFilmGenre(Film film) {
@@ -131,6 +400,22 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
+    private Film makeStoredFilm(Film film, LongIdSet likes) {
+        Set<Genre> genres = new TreeSet<>();
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                Genre stored = catalog.getGenre(genre.getId());
+                genres.add(stored != null ? stored : genre);
+            }
+        }
+        Mpa mpa = catalog.getMpa(film.getMpa().getId());
+        return film.toBuilder()
+                .mpa(mpa != null ? mpa : film.getMpa())
+                .genres(genres)
+                .likes(likes)
+                .build();
+    }
+
     public Film makeFilm(ResultSet rs) throws SQLException {
         long filmId = rs.getLong("film_id");
         String filmName = rs.getString("name");
@@ -138,11 +423,7 @@ public class FilmDbStorage implements FilmStorage {
         LocalDate releaseDate = rs.getDate("release_date").toLocalDate();
         int duration = rs.getInt("duration");
         Integer mpaId = rs.getInt("mpa_id");
-        String mpaName = rs.getString("mpa_name");
-        String genreId = rs.getString("genre_id");
-        String genreName = rs.getString("genre_name");
-        String filmLikes = rs.getString("user_id");
-
+        Mpa mpa = catalog.getMpa(mpaId);
 
         return Film.builder()
                 .id(filmId)
@@ -150,43 +431,31 @@ public class FilmDbStorage implements FilmStorage {
                 .description(description)
                 .releaseDate(releaseDate)
                 .duration(duration)
-                .mpa(new Mpa(mpaId, mpaName))
-                .genres(getFilmGenres(genreId, genreName))
-                .likes(getFilmLikes(filmLikes))
+                .mpa(mpa != null ? mpa : new Mpa(mpaId, null))
+                .genres(new TreeSet<>())
+                .likes(new LongIdSet())
                 .build();
     }
 
-    public Set<Genre> getFilmGenres(String genreId, String genreName) {
-        Set<Genre> genres = new TreeSet<>();
-        if (genreId != null && genreName != null) {
-            String[] genreIdArray = genreId.split(",");
-            String[] genreNameArray = genreName.split(",");
-            for (int i = 0; i < genreIdArray.length; i++) {
-                genres.add(new Genre(
-                        Integer.parseInt(genreIdArray[i]),
-                        genreNameArray[i]));
-            }
-        }
-        return genres;
-    }
-
-    public Set<Long> getFilmLikes(String filmLikes) {
-        Set<Long> likes = new TreeSet<>();
-        if (filmLikes != null) {
-            String[] filmLikesArray = filmLikes.split(",");
-            for (String filmLike : filmLikesArray) {
-                likes.add(Long.parseLong(filmLike));
-            }
-        }
-        return likes;
-    }
-
     public void updateFilmLikes(Film film) {
         jdbcTemplate.update("delete from likes where film_id = ?", film.getId());
         if (film.getLikes() != null) {
-            for (Long userId : film.getLikes()) {
-                jdbcTemplate.update("insert into likes (film_id, user_id) values (?, ?)", film.getId(), userId);
-            }
+            List<Long> likes = new ArrayList<>(film.getLikes());
+            String sql = "insert into likes (film_id, user_id) values (?, ?)";
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, film.getId());
+                    ps.setLong(2, likes.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return likes.size();
+                }
+            });
         }
+        jdbcTemplate.update("update film set like_count = (select count(*) from likes where film_id = ?) " +
+                "where film_id = ?", film.getId(), film.getId());
     }
 }
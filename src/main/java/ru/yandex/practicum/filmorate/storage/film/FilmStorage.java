@@ -1,8 +1,12 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface FilmStorage {
 
@@ -13,4 +17,28 @@ public interface FilmStorage {
     public Film getFilmById(Long id);
 
     public List<Film> getAllFilms();
+
+    public List<Film> getFilms(long after, int limit);
+
+    public List<Film> getPopularFilms(int count);
+
+    public List<Film> getFilmsByIds(List<Long> ids);
+
+    public boolean addLike(Long filmId, Long userId);
+
+    public boolean deleteLike(Long filmId, Long userId);
+
+    public List<Long> addFilms(List<Film> films);
+
+    public int addLikes(List<Like> likes);
+
+    public int importLikes(List<Like> likes);
+
+    public void recountLikes(Collection<Long> ids);
+
+    public int deleteLikes(List<Like> likes);
+
+    public LongIdSet getExistingIds(Collection<Long> ids);
+
+    public Map<Long, Integer> getLikeCounts(Collection<Long> ids);
 }
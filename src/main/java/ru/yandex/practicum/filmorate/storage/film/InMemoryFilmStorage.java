@@ -1,66 +1,241 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 @Component
+@Profile("inmemory")
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private Map<Long, Film> films = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
 
-    private static long id = 1;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex();
 
     @Override
     public Film addFilm(Film film) {
-        film.setId(id);
-        if (film.getLikes() == null) {
-            film.setLikes(new HashSet<>());
-        }
-        films.put(id++, film);
+        Film storedFilm = stored(film, nextId.getAndIncrement());
+        films.put(storedFilm.getId(), storedFilm);
+        refreshRating(storedFilm.getId());
+        film.setId(storedFilm.getId());
         log.info("Фильм {} успешно добавлен.", film.getName());
-        return film;
+        return snapshot(storedFilm);
     }
 
     @Override
     public Film updateFilm(Film film) {
-        if (film.getLikes() == null) {
-            film.setLikes(new HashSet<>());
+        Film update = stored(film, film.getId());
+        Film storedFilm = change(film.getId(), stored -> update);
+        log.info("Фильм {} успешно обновлён.", film.getName());
+        return snapshot(storedFilm);
+    }
+
+    @Override
+    public Film getFilmById(Long id) {
+        return snapshot(getStoredFilm(id));
+    }
+
+    @Override
+    public List<Film> getAllFilms() {
+        List<Film> copies = new ArrayList<>();
+        for (Film film : films.values()) {
+            copies.add(snapshot(film));
         }
-        if (films.containsKey(film.getId())) {
-            films.remove(film.getId());
-            films.put(film.getId(), film);
-            log.info("Фильм {} успешно обновлён.", film.getName());
-        } else {
-            throw new NotFoundException("фильм");
+        return copies;
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        List<Film> page = new ArrayList<>();
+        for (Film film : films.tailMap(after, false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(snapshot(film));
         }
-        return film;
+        return page;
     }
 
     @Override
-    public Film getFilmById(Long id) {
-        if (films.containsKey(id)) {
-            return films.get(id);
-        } else {
-            throw new NotFoundException("фильм");
+    public List<Film> getPopularFilms(int count) {
+        List<Film> popularFilms = new ArrayList<>();
+        for (Long filmId : popularFilmsIndex.getTop(count)) {
+            Film film = films.get(filmId);
+            if (film != null) {
+                popularFilms.add(snapshot(film));
+            }
         }
+        return popularFilms;
     }
 
     @Override
-    public List<Film> getAllFilms() {
-        return new ArrayList<>(films.values());
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        List<Film> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                found.add(snapshot(film));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        boolean[] added = new boolean[1];
+        change(filmId, stored -> {
+            added[0] = !((LongIdSet) stored.getLikes()).containsId(userId);
+            return added[0] ? withLikes(stored, likes -> likes.addId(userId)) : stored;
+        });
+        return added[0];
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        boolean[] deleted = new boolean[1];
+        change(filmId, stored -> {
+            deleted[0] = ((LongIdSet) stored.getLikes()).containsId(userId);
+            return deleted[0] ? withLikes(stored, likes -> likes.removeId(userId)) : stored;
+        });
+        return deleted[0];
+    }
+
+    @Override
+    public List<Long> addFilms(List<Film> films) {
+        List<Long> ids = new ArrayList<>(films.size());
+        for (Film film : films) {
+            ids.add(addFilm(film.toBuilder().build()).getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public int addLikes(List<Like> likes) {
+        int added = 0;
+        for (Like like : likes) {
+            if (addLike(like.getFilmId(), like.getUserId())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int importLikes(List<Like> likes) {
+        return addLikes(likes);
+    }
+
+    @Override
+    public void recountLikes(Collection<Long> ids) {
+    }
+
+    @Override
+    public int deleteLikes(List<Like> likes) {
+        int deleted = 0;
+        for (Like like : likes) {
+            if (deleteLike(like.getFilmId(), like.getUserId())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public LongIdSet getExistingIds(Collection<Long> ids) {
+        LongIdSet existingIds = new LongIdSet();
+        for (Long id : ids) {
+            if (films.containsKey(id)) {
+                existingIds.addId(id);
+            }
+        }
+        return existingIds;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts(Collection<Long> ids) {
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        for (Long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                likeCounts.put(id, film.getLikes().size());
+            }
+        }
+        return likeCounts;
     }
 
     public Film removeFilmById(Long id) {
-        if (films.containsKey(id)) {
-            films.remove(id);
-            return films.get(id);
-        } else {
+        Film storedFilm = films.remove(id);
+        if (storedFilm == null) {
             throw new NotFoundException("фильм");
         }
+        refreshRating(id);
+        return snapshot(storedFilm);
+    }
+
+    private Film getStoredFilm(Long id) {
+        Film film = films.get(id);
+        if (film == null) {
+            throw new NotFoundException("фильм");
+        }
+        return film;
+    }
+
+    private Film change(Long id, UnaryOperator<Film> change) {
+        Film changed = films.computeIfPresent(id, (key, stored) -> change.apply(stored));
+        if (changed == null) {
+            throw new NotFoundException("фильм");
+        }
+        refreshRating(id);
+        return changed;
+    }
+
+    private void refreshRating(long filmId) {
+        popularFilmsIndex.refresh(filmId, () -> {
+            Film film = films.get(filmId);
+            return film == null ? -1 : film.getLikes().size();
+        });
+    }
+
+    private static Film withLikes(Film storedFilm, Consumer<LongIdSet> change) {
+        LongIdSet likes = new LongIdSet(storedFilm.getLikes());
+        change.accept(likes);
+        return storedFilm.toBuilder().likes(likes.freeze()).build();
+    }
+
+    private static Film stored(Film film, long id) {
+        Film storedFilm = copyOf(film, id);
+        ((LongIdSet) storedFilm.getLikes()).freeze();
+        return storedFilm;
+    }
+
+    private static Film snapshot(Film storedFilm) {
+        return copyOf(storedFilm, storedFilm.getId());
+    }
+
+    private static Film copyOf(Film film, long id) {
+        return Film.builder()
+                .id(id)
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .genres(film.getGenres() == null ? new TreeSet<>() : new TreeSet<>(film.getGenres()))
+                .likes(film.getLikes() == null ? new LongIdSet() : new LongIdSet(film.getLikes()))
+                .build();
     }
 }
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class LikeJournal implements Closeable {
+    private static final String PREFIX = "likes-";
+    private static final String SUFFIX = ".journal";
+    private static final int RECORD_SIZE = 1 + 2 * Long.BYTES;
+
+    private final Path directory;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final AtomicLong appended = new AtomicLong();
+    private final Object syncLock = new Object();
+    private volatile long synced;
+    private FileChannel channel;
+    private long segment;
+
+    LikeJournal(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Map<Like, Boolean> recover() {
+        Map<Like, Boolean> events = new LinkedHashMap<>();
+        try {
+            for (long number : segments()) {
+                segment = Math.max(segment, number);
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file(number)));
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    boolean liked = buffer.get() == 1;
+                    Like like = new Like(buffer.getLong(), buffer.getLong());
+                    events.remove(like);
+                    events.put(like, liked);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return events;
+    }
+
+    long append(long filmId, long userId, boolean liked) {
+        record.clear();
+        record.put((byte) (liked ? 1 : 0)).putLong(filmId).putLong(userId).flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return appended.incrementAndGet();
+    }
+
+    void sync(long position) {
+        if (synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target = appended.get();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synced = target;
+        }
+    }
+
+    long rotate() {
+        long closed = segment;
+        synchronized (syncLock) {
+            try {
+                if (channel != null) {
+                    channel.force(false);
+                    channel.close();
+                    synced = appended.get();
+                }
+                channel = FileChannel.open(file(segment + 1), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        segment++;
+        return closed;
+    }
+
+    void deleteUpTo(long last) {
+        try {
+            for (long number : segments()) {
+                if (number <= last) {
+                    Files.deleteIfExists(file(number));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path file(long number) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, number, SUFFIX));
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+public class PopularFilmsIndex {
+
+    private static final Comparator<Entry> RATING_ORDER = Comparator
+            .comparingInt((Entry e) -> e.likes).reversed()
+            .thenComparingLong(e -> e.filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> rating = new TreeSet<>(RATING_ORDER);
+
+    public synchronized void put(long filmId, int likes) {
+        Entry old = entries.get(filmId);
+        if (old != null) {
+            if (old.likes == likes) {
+                return;
+            }
+            rating.remove(old);
+        }
+        Entry entry = new Entry(filmId, likes);
+        entries.put(filmId, entry);
+        rating.add(entry);
+    }
+
+    public synchronized void refresh(long filmId, IntSupplier likes) {
+        int current = likes.getAsInt();
+        if (current < 0) {
+            remove(filmId);
+        } else {
+            put(filmId, current);
+        }
+    }
+
+    public synchronized void remove(long filmId) {
+        Entry entry = entries.remove(filmId);
+        if (entry != null) {
+            rating.remove(entry);
+        }
+    }
+
+    public synchronized List<Long> getTop(int count) {
+        List<Long> top = new ArrayList<>(Math.max(0, Math.min(count, rating.size())));
+        Iterator<Entry> iterator = rating.iterator();
+        while (top.size() < count && iterator.hasNext()) {
+            top.add(iterator.next().filmId);
+        }
+        return top;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        rating.clear();
+    }
+
+    private static final class Entry {
+        private final long filmId;
+        private final int likes;
+
+        private Entry(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Primary
+@Component
+@Profile("!inmemory")
+@ConditionalOnProperty(value = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class WriteBehindFilmStorage implements FilmStorage {
+
+    private static final int SLICE_SIZE = 10000;
+
+    private final FilmDbStorage delegate;
+    private final EntityCaches entityCaches;
+    private final int flushSize;
+    private final int capacity;
+    private final Duration flushInterval;
+    private final LikeJournal journal;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private Map<Long, Map<Long, Boolean>> pending = new HashMap<>();
+    private Map<Long, Map<Long, Boolean>> flushing = Map.of();
+    private int pendingSize;
+    private ScheduledExecutorService scheduler;
+
+    public WriteBehindFilmStorage(FilmDbStorage delegate, EntityCaches entityCaches, MeterRegistry registry,
+                                  @Value("${filmorate.likes.write-behind.flush-size}") int flushSize,
+                                  @Value("${filmorate.likes.write-behind.capacity}") int capacity,
+                                  @Value("${filmorate.likes.write-behind.flush-interval}") Duration flushInterval,
+                                  @Value("${filmorate.likes.write-behind.journal}") String journalDirectory) {
+        this.delegate = delegate;
+        this.entityCaches = entityCaches;
+        this.flushSize = flushSize;
+        this.capacity = capacity;
+        this.flushInterval = flushInterval;
+        this.journal = journalDirectory.isBlank() ? null : new LikeJournal(Path.of(journalDirectory));
+        Gauge.builder("filmorate.likes.pending", this, WriteBehindFilmStorage::getPendingSize)
+                .description("Лайки, ожидающие записи в базу")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (journal != null) {
+            Map<Like, Boolean> events = journal.recover();
+            write(events.entrySet().stream()
+                    .collect(Collectors.groupingBy(e -> e.getKey().getFilmId(),
+                            Collectors.toMap(e -> e.getKey().getUserId(), Map.Entry::getValue))));
+            journal.deleteUpTo(journal.rotate());
+            if (!events.isEmpty()) {
+                log.info("Из журнала восстановлено {} событий лайков.", events.size());
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "likes-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        scheduler.shutdown();
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public int getPendingSize() {
+        synchronized (lock) {
+            return pendingSize;
+        }
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Map<Long, Boolean>> batch;
+            long segment = 0;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new HashMap<>();
+                pendingSize = 0;
+                if (journal != null) {
+                    segment = journal.rotate();
+                }
+            }
+            boolean written = false;
+            try {
+                write(batch);
+                written = true;
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать лайки в базу, события возвращены в буфер.", e);
+            } finally {
+                entityCaches.films().invalidateAll(batch.keySet());
+                synchronized (lock) {
+                    if (!written) {
+                        restore(batch);
+                    }
+                    flushing = Map.of();
+                    flushes.incrementAndGet();
+                }
+            }
+            if (written && journal != null) {
+                journal.deleteUpTo(segment);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return delegate.addFilm(film);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        flush();
+        return delegate.updateFilm(film);
+    }
+
+    @Override
+    public Film getFilmById(Long id) {
+        Map<Long, Boolean> changes = changesOf(id);
+        return overlay(delegate.getFilmById(id), changes);
+    }
+
+    @Override
+    public List<Film> getAllFilms() {
+        return overlay(changes(), delegate.getAllFilms());
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return overlay(changes(), delegate.getFilms(after, limit));
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        Map<Long, Map<Long, Boolean>> changes = changes();
+        if (changes.isEmpty()) {
+            return delegate.getPopularFilms(count);
+        }
+        long losing = changes.values().stream().filter(c -> c.containsValue(false)).count();
+        Set<Long> candidates = new LinkedHashSet<>(delegate.getPopularFilmIds((int) Math.min(Integer.MAX_VALUE,
+                count + losing)));
+        changes.forEach((filmId, filmChanges) -> {
+            if (filmChanges.containsValue(true)) {
+                candidates.add(filmId);
+            }
+        });
+        List<Long> ids = new ArrayList<>(candidates);
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += SLICE_SIZE) {
+            likeCounts.putAll(delegate.getLikeCounts(ids.subList(from, Math.min(ids.size(), from + SLICE_SIZE))));
+        }
+        overlayCounts(changes, likeCounts);
+        List<Long> top = likeCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        Map<Long, Film> films = getFilmsByIds(top).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return top.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return overlay(changes(), delegate.getFilmsByIds(ids));
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return apply(filmId, userId, true);
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return apply(filmId, userId, false);
+    }
+
+    @Override
+    public List<Long> addFilms(List<Film> films) {
+        return delegate.addFilms(films);
+    }
+
+    @Override
+    public int addLikes(List<Like> likes) {
+        flush();
+        return delegate.addLikes(likes);
+    }
+
+    @Override
+    public int importLikes(List<Like> likes) {
+        flush();
+        return delegate.importLikes(likes);
+    }
+
+    @Override
+    public void recountLikes(Collection<Long> ids) {
+        flush();
+        delegate.recountLikes(ids);
+    }
+
+    @Override
+    public int deleteLikes(List<Like> likes) {
+        flush();
+        return delegate.deleteLikes(likes);
+    }
+
+    @Override
+    public LongIdSet getExistingIds(Collection<Long> ids) {
+        return delegate.getExistingIds(ids);
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts(Collection<Long> ids) {
+        Map<Long, Integer> likeCounts = delegate.getLikeCounts(ids);
+        overlayCounts(changes(), likeCounts);
+        return likeCounts;
+    }
+
+    private boolean apply(long filmId, long userId, boolean liked) {
+        while (true) {
+            long generation = flushes.get();
+            boolean stored = delegate.hasLike(filmId, userId);
+            boolean full;
+            long position = 0;
+            synchronized (lock) {
+                if (generation != flushes.get()) {
+                    continue;
+                }
+                Map<Long, Boolean> flushingChanges = flushing.get(filmId);
+                Boolean flushingState = flushingChanges == null ? null : flushingChanges.get(userId);
+                boolean base = flushingState != null ? flushingState : stored;
+                Map<Long, Boolean> filmChanges = pending.get(filmId);
+                Boolean pendingState = filmChanges == null ? null : filmChanges.get(userId);
+                if ((pendingState != null ? pendingState : base) == liked) {
+                    return false;
+                }
+                if (journal != null) {
+                    position = journal.append(filmId, userId, liked);
+                }
+                if (base == liked) {
+                    filmChanges.remove(userId);
+                    if (filmChanges.isEmpty()) {
+                        pending.remove(filmId);
+                    }
+                    pendingSize--;
+                } else {
+                    pending.computeIfAbsent(filmId, id -> new HashMap<>()).put(userId, liked);
+                    pendingSize++;
+                }
+                full = pendingSize >= capacity;
+                if (!full && pendingSize >= flushSize) {
+                    requestFlush();
+                }
+            }
+            if (journal != null) {
+                journal.sync(position);
+            }
+            if (full) {
+                flush();
+            }
+            return true;
+        }
+    }
+
+    private void write(Map<Long, Map<Long, Boolean>> changes) {
+        List<Like> added = new ArrayList<>();
+        List<Like> deleted = new ArrayList<>();
+        changes.forEach((filmId, filmChanges) -> filmChanges.forEach((userId, liked) ->
+                (liked ? added : deleted).add(new Like(filmId, userId))));
+        if (!added.isEmpty()) {
+            delegate.addLikes(added);
+        }
+        if (!deleted.isEmpty()) {
+            delegate.deleteLikes(deleted);
+        }
+    }
+
+    private void restore(Map<Long, Map<Long, Boolean>> batch) {
+        batch.forEach((filmId, filmChanges) -> {
+            Map<Long, Boolean> current = pending.computeIfAbsent(filmId, id -> new HashMap<>());
+            filmChanges.forEach((userId, liked) -> {
+                if (current.putIfAbsent(userId, liked) == null) {
+                    pendingSize++;
+                }
+            });
+        });
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при сбросе буфера лайков.", e);
+        }
+    }
+
+    private Map<Long, Boolean> changesOf(long filmId) {
+        synchronized (lock) {
+            Map<Long, Boolean> flushingChanges = flushing.get(filmId);
+            Map<Long, Boolean> pendingChanges = pending.get(filmId);
+            if (flushingChanges == null && pendingChanges == null) {
+                return null;
+            }
+            Map<Long, Boolean> changes = new HashMap<>();
+            if (flushingChanges != null) {
+                changes.putAll(flushingChanges);
+            }
+            if (pendingChanges != null) {
+                changes.putAll(pendingChanges);
+            }
+            return changes;
+        }
+    }
+
+    private Map<Long, Map<Long, Boolean>> changes() {
+        synchronized (lock) {
+            if (flushing.isEmpty() && pending.isEmpty()) {
+                return Map.of();
+            }
+            Map<Long, Map<Long, Boolean>> changes = new HashMap<>();
+            flushing.forEach((filmId, filmChanges) -> changes.put(filmId, new HashMap<>(filmChanges)));
+            pending.forEach((filmId, filmChanges) ->
+                    changes.computeIfAbsent(filmId, id -> new HashMap<>()).putAll(filmChanges));
+            return changes;
+        }
+    }
+
+    private static void overlayCounts(Map<Long, Map<Long, Boolean>> changes, Map<Long, Integer> likeCounts) {
+        likeCounts.replaceAll((filmId, count) -> {
+            Map<Long, Boolean> filmChanges = changes.get(filmId);
+            if (filmChanges == null) {
+                return count;
+            }
+            for (boolean liked : filmChanges.values()) {
+                count += liked ? 1 : -1;
+            }
+            return count;
+        });
+    }
+
+    private static List<Film> overlay(Map<Long, Map<Long, Boolean>> changes, List<Film> films) {
+        if (changes.isEmpty()) {
+            return films;
+        }
+        return films.stream()
+                .map(film -> overlay(film, changes.get(film.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private static Film overlay(Film film, Map<Long, Boolean> changes) {
+        if (changes == null) {
+            return film;
+        }
+        LongIdSet likes = LongIdSet.copyOf(film.getLikes());
+        changes.forEach((userId, liked) -> {
+            if (liked) {
+                likes.addId(userId);
+            } else {
+                likes.removeId(userId);
+            }
+        });
+        return film.toBuilder().likes(likes).build();
+    }
+}
@@ -1,44 +1,32 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceCatalog;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.List;
 
 @Component
 public class GenreDaoImpl implements GenreDao {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceCatalog catalog;
 
-    public GenreDaoImpl(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public GenreDaoImpl(ReferenceCatalog catalog) {
+        this.catalog = catalog;
     }
 
     @Override
     public Genre getGenreById(Integer id) {
-        String sql = "select * from genre where genre_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> makeGenre(rs), id);
-        } catch (EmptyResultDataAccessException e) {
+        Genre genre = catalog.getGenre(id);
+        if (genre == null) {
             throw new NotFoundException("жанр");
         }
+        return genre;
     }
 
     @Override
     public List<Genre> getAllGenres() {
-        String sql = "select * from genre";
-            return jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs));
-    }
-
-    public Genre makeGenre(ResultSet rs) throws SQLException {
-        int id = rs.getInt("genre_id");
-        String name = rs.getString("name");
-
-        return new Genre(id, name);
+        return catalog.getAllGenres();
     }
 }
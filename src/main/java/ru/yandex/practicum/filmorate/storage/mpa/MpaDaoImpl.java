@@ -1,45 +1,32 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceCatalog;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.List;
 
 @Component
 public class MpaDaoImpl implements MpaDao {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceCatalog catalog;
 
-    public MpaDaoImpl(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public MpaDaoImpl(ReferenceCatalog catalog) {
+        this.catalog = catalog;
     }
 
     @Override
     public Mpa getMpaById(Integer id) {
-        String sql = "select * from mpa where mpa_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> makeMpa(rs), id);
-        } catch (EmptyResultDataAccessException e) {
+        Mpa mpa = catalog.getMpa(id);
+        if (mpa == null) {
             throw new NotFoundException("рэйтинг");
         }
+        return mpa;
     }
 
     @Override
     public List<Mpa> getAllMpa() {
-        String sql = "select * from mpa";
-
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeMpa(rs));
-    }
-
-    public Mpa makeMpa(ResultSet rs) throws SQLException {
-        int id = rs.getInt("mpa_id");
-        String name = rs.getString("mpa_name");
-
-        return new Mpa(id, name);
+        return catalog.getAllMpa();
     }
 }
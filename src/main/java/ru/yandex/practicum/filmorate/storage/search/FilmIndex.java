@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.List;
+import java.util.Map;
+
+public interface FilmIndex {
+
+    public Loader newLoader();
+
+    public void put(Film film);
+
+    public void addLike(long filmId, long userId);
+
+    public void deleteLike(long filmId, long userId);
+
+    public void importLikes(List<Like> likes, Map<Long, Integer> likeCounts);
+
+    public interface Loader {
+
+        public void add(Film film);
+
+        public void commit();
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+@Slf4j
+@Component
+public class FilmIndexes {
+    private static final int PAGE_SIZE = 1000;
+
+    private final FilmStorage filmStorage;
+    private final List<FilmIndex> indexes;
+    private final Object rebuildLock = new Object();
+    private Set<Long> changedDuringRebuild;
+
+    public FilmIndexes(FilmStorage filmStorage, List<FilmIndex> indexes) {
+        this.filmStorage = filmStorage;
+        this.indexes = indexes;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            try {
+                load();
+            } finally {
+                synchronized (this) {
+                    changedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        List<FilmIndex.Loader> loaders = new ArrayList<>(indexes.size());
+        for (FilmIndex index : indexes) {
+            loaders.add(index.newLoader());
+        }
+        long after = 0;
+        long films = 0;
+        List<Film> page;
+        do {
+            page = filmStorage.getFilms(after, PAGE_SIZE);
+            for (Film film : page) {
+                for (FilmIndex.Loader loader : loaders) {
+                    loader.add(film);
+                }
+                after = film.getId();
+            }
+            films += page.size();
+        } while (page.size() == PAGE_SIZE);
+        for (FilmIndex.Loader loader : loaders) {
+            loader.commit();
+        }
+        int replayed = 0;
+        while (true) {
+            Set<Long> changed;
+            synchronized (this) {
+                changed = changedDuringRebuild;
+                if (changed.isEmpty()) {
+                    break;
+                }
+                changedDuringRebuild = new HashSet<>();
+            }
+            replayed += replay(changed);
+        }
+        log.info("Индексы фильмов построены: фильмов {}, индексов {}, повторено изменений {} за {} мс.", films,
+                indexes.size(), replayed, System.currentTimeMillis() - start);
+    }
+
+    public void put(Film film) {
+        apply(List.of(film.getId()), index -> index.put(film));
+    }
+
+    public void update(Film film) {
+        EntityCaches.afterCommit(() -> {
+            for (Film committed : filmStorage.getFilmsByIds(List.of(film.getId()))) {
+                applyNow(List.of(committed.getId()), index -> index.put(committed));
+            }
+        });
+    }
+
+    public void addLike(long filmId, long userId) {
+        apply(List.of(filmId), index -> index.addLike(filmId, userId));
+    }
+
+    public void deleteLike(long filmId, long userId) {
+        apply(List.of(filmId), index -> index.deleteLike(filmId, userId));
+    }
+
+    public void importLikes(List<Like> likes, Map<Long, Integer> likeCounts) {
+        apply(likeCounts.keySet(), index -> index.importLikes(likes, likeCounts));
+    }
+
+    private void apply(Collection<Long> filmIds, Consumer<FilmIndex> update) {
+        EntityCaches.afterCommit(() -> applyNow(filmIds, update));
+    }
+
+    private void applyNow(Collection<Long> filmIds, Consumer<FilmIndex> update) {
+        record(filmIds);
+        for (FilmIndex index : indexes) {
+            update.accept(index);
+        }
+    }
+
+    private synchronized void record(Collection<Long> filmIds) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.addAll(filmIds);
+        }
+    }
+
+    private int replay(Set<Long> filmIds) {
+        List<Long> ids = new ArrayList<>(filmIds);
+        for (int from = 0; from < ids.size(); from += PAGE_SIZE) {
+            for (Film film : filmStorage.getFilmsByIds(ids.subList(from, Math.min(ids.size(), from + PAGE_SIZE)))) {
+                for (FilmIndex index : indexes) {
+                    index.put(film);
+                }
+            }
+        }
+        return ids.size();
+    }
+}
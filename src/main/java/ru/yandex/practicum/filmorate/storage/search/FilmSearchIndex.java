@@ -0,0 +1,479 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class FilmSearchIndex implements FilmIndex {
+
+    public enum Field {
+        NAME(8, 4),
+        DESCRIPTION(2, 1);
+
+        private final int exactWeight;
+        private final int prefixWeight;
+
+        Field(int exactWeight, int prefixWeight) {
+            this.exactWeight = exactWeight;
+            this.prefixWeight = prefixWeight;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+    private static final int MAX_EXPANSIONS = 32;
+    private static final int PROBE_COST = 16;
+    private static final int MAX_SCORE = 0x7fff;
+    private static final int MAX_RANK = 0xffffff;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[0]);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Index index = new Index();
+
+    @Override
+    public Loader newLoader() {
+        Index rebuilt = new Index();
+        return new Loader() {
+            @Override
+            public void add(Film film) {
+                rebuilt.put(film.getId(), film.getName(), film.getDescription(), likesOf(film));
+            }
+
+            @Override
+            public void commit() {
+                Lock writeLock = lock.writeLock();
+                writeLock.lock();
+                try {
+                    index = rebuilt;
+                } finally {
+                    writeLock.unlock();
+                }
+                log.info("Поисковый индекс: фильмов {}, термов {}.", rebuilt.size, rebuilt.terms.size());
+            }
+        };
+    }
+
+    @Override
+    public void put(Film film) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            index.put(film.getId(), film.getName(), film.getDescription(), likesOf(film));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        addLikes(filmId, 1);
+    }
+
+    @Override
+    public void deleteLike(long filmId, long userId) {
+        addLikes(filmId, -1);
+    }
+
+    @Override
+    public void importLikes(List<Like> likes, Map<Long, Integer> likeCounts) {
+        setLikes(likeCounts);
+    }
+
+    public void addLikes(long filmId, int delta) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Integer ordinal = index.ordinals.get(filmId);
+            if (ordinal != null) {
+                index.likes[ordinal] = Math.max(0, index.likes[ordinal] + delta);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void setLikes(Map<Long, Integer> likeCounts) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            likeCounts.forEach((filmId, count) -> {
+                Integer ordinal = index.ordinals.get(filmId);
+                if (ordinal != null) {
+                    index.likes[ordinal] = count;
+                }
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return index.size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Long> search(String query, Set<Field> fields, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return index.search(tokens, fields, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    static int likesOf(Film film) {
+        return film.getLikes() == null ? 0 : film.getLikes().size();
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isLetterOrDigit(c)) {
+                token.appendCodePoint(normalize(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static int normalize(int c) {
+        int lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    private static final class Index {
+        private final NavigableMap<String, Term> terms = new TreeMap<>();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private long[] ids = new long[1024];
+        private int[] likes = new int[1024];
+        private final Term[][][] docTerms = new Term[FIELDS.length][1024][];
+        private int size;
+
+        private void put(long id, String name, String description, int likeCount) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = size++;
+                grow(size);
+                ordinals.put(id, ordinal);
+                ids[ordinal] = id;
+            } else {
+                removeTerms(ordinal);
+            }
+            likes[ordinal] = likeCount;
+            addTerms(ordinal, Field.NAME, name);
+            addTerms(ordinal, Field.DESCRIPTION, description);
+        }
+
+        private void grow(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int length = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, length);
+            likes = Arrays.copyOf(likes, length);
+            for (int f = 0; f < FIELDS.length; f++) {
+                docTerms[f] = Arrays.copyOf(docTerms[f], length);
+            }
+        }
+
+        private void addTerms(int ordinal, Field field, String text) {
+            List<String> tokens = tokenize(text);
+            Term[] fieldTerms = new Term[tokens.size()];
+            for (int i = 0; i < fieldTerms.length; i++) {
+                Term term = terms.computeIfAbsent(tokens.get(i), Term::new);
+                term.postings[field.ordinal()].add(ordinal);
+                fieldTerms[i] = term;
+            }
+            docTerms[field.ordinal()][ordinal] = fieldTerms;
+        }
+
+        private void removeTerms(int ordinal) {
+            for (Field field : FIELDS) {
+                for (Term term : docTerms[field.ordinal()][ordinal]) {
+                    term.postings[field.ordinal()].remove(ordinal);
+                    if (term.isEmpty()) {
+                        terms.remove(term.text);
+                    }
+                }
+            }
+        }
+
+        private List<Long> search(List<String> tokens, Set<Field> fields, int limit) {
+            List<Sources> matches = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Sources sources = expand(token, fields);
+                if (sources.items.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(sources);
+            }
+            matches.sort(Comparator.comparingLong(sources -> sources.cost));
+            byte[] best = scratch();
+            Candidates candidates = collect(matches.get(0), best);
+            for (int i = 1; i < matches.size() && candidates.size > 0; i++) {
+                Sources sources = matches.get(i);
+                if ((long) candidates.size * sources.items.size() * PROBE_COST < sources.cost) {
+                    candidates.probe(sources);
+                } else {
+                    candidates.mark(sources, best);
+                }
+            }
+            return top(candidates, limit);
+        }
+
+        private byte[] scratch() {
+            byte[] best = SCRATCH.get();
+            if (best.length < size) {
+                best = new byte[ids.length];
+                SCRATCH.set(best);
+            }
+            return best;
+        }
+
+        private Sources expand(String token, Set<Field> fields) {
+            Sources sources = new Sources();
+            Term exact = terms.get(token);
+            for (Field field : fields) {
+                if (exact != null) {
+                    sources.add(exact.postings[field.ordinal()], field.exactWeight);
+                }
+                PriorityQueue<Postings> frequent = new PriorityQueue<>(Comparator.comparingInt(p -> p.size));
+                for (Term term : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                    Postings postings = term.postings[field.ordinal()];
+                    if (postings.size == 0) {
+                        continue;
+                    }
+                    if (frequent.size() < MAX_EXPANSIONS) {
+                        frequent.add(postings);
+                    } else if (frequent.peek().size < postings.size) {
+                        frequent.poll();
+                        frequent.add(postings);
+                    }
+                }
+                for (Postings postings : frequent) {
+                    sources.add(postings, field.prefixWeight);
+                }
+            }
+            sources.items.sort(Comparator.comparingInt((Source source) -> source.weight).reversed());
+            return sources;
+        }
+
+        private Candidates collect(Sources sources, byte[] best) {
+            Candidates candidates = new Candidates((int) Math.min(sources.cost, size));
+            for (Source source : sources.items) {
+                int[] docs = source.postings.docs;
+                for (int i = 0; i < source.postings.size; i++) {
+                    int doc = docs[i];
+                    if (best[doc] == 0) {
+                        candidates.add(doc, 0);
+                    }
+                    if (best[doc] < source.weight) {
+                        best[doc] = (byte) source.weight;
+                    }
+                }
+            }
+            for (int i = 0; i < candidates.size; i++) {
+                candidates.scores[i] = best[candidates.docs[i]];
+                best[candidates.docs[i]] = 0;
+            }
+            return candidates;
+        }
+
+        private List<Long> top(Candidates candidates, int limit) {
+            int length = Math.min(limit, candidates.size);
+            long[] keys = new long[length];
+            int[] docs = new int[length];
+            int count = 0;
+            for (int i = 0; i < candidates.size; i++) {
+                int doc = candidates.docs[i];
+                long key = (long) Math.min(candidates.scores[i], MAX_SCORE) << 48
+                        | (long) Math.min(likes[doc], MAX_RANK) << 24
+                        | MAX_RANK - Math.min(doc, MAX_RANK);
+                if (count == length && key <= keys[count - 1]) {
+                    continue;
+                }
+                int position = count == length ? count - 1 : count++;
+                while (position > 0 && keys[position - 1] < key) {
+                    keys[position] = keys[position - 1];
+                    docs[position] = docs[position - 1];
+                    position--;
+                }
+                keys[position] = key;
+                docs[position] = doc;
+            }
+            List<Long> top = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                top.add(ids[docs[i]]);
+            }
+            return top;
+        }
+    }
+
+    private static final class Term {
+        private final String text;
+        private final Postings[] postings = new Postings[FIELDS.length];
+
+        private Term(String text) {
+            this.text = text;
+            for (int f = 0; f < FIELDS.length; f++) {
+                postings[f] = new Postings();
+            }
+        }
+
+        private boolean isEmpty() {
+            for (Postings fieldPostings : postings) {
+                if (fieldPostings.size > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int size;
+
+        private void add(int ordinal) {
+            if (size > 0 && docs[size - 1] >= ordinal) {
+                int position = Arrays.binarySearch(docs, 0, size, ordinal);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, ordinal);
+                return;
+            }
+            insert(size, ordinal);
+        }
+
+        private void insert(int position, int ordinal) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, position, docs, position + 1, size - position);
+            docs[position] = ordinal;
+            size++;
+        }
+
+        private void remove(int ordinal) {
+            int position = Arrays.binarySearch(docs, 0, size, ordinal);
+            if (position >= 0) {
+                System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+                size--;
+            }
+        }
+
+        private boolean contains(int ordinal) {
+            return Arrays.binarySearch(docs, 0, size, ordinal) >= 0;
+        }
+    }
+
+    private static final class Source {
+        private final Postings postings;
+        private final int weight;
+
+        private Source(Postings postings, int weight) {
+            this.postings = postings;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Sources {
+        private final List<Source> items = new ArrayList<>();
+        private long cost;
+
+        private void add(Postings fieldPostings, int weight) {
+            if (fieldPostings.size > 0) {
+                items.add(new Source(fieldPostings, weight));
+                cost += fieldPostings.size;
+            }
+        }
+    }
+
+    private static final class Candidates {
+        private final int[] docs;
+        private final int[] scores;
+        private int size;
+
+        private Candidates(int capacity) {
+            this.docs = new int[capacity];
+            this.scores = new int[capacity];
+        }
+
+        private void add(int ordinal, int score) {
+            docs[size] = ordinal;
+            scores[size] = score;
+            size++;
+        }
+
+        private void probe(Sources sources) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                for (Source source : sources.items) {
+                    if (source.postings.contains(docs[i])) {
+                        docs[kept] = docs[i];
+                        scores[kept] = scores[i] + source.weight;
+                        kept++;
+                        break;
+                    }
+                }
+            }
+            size = kept;
+        }
+
+        private void mark(Sources sources, byte[] best) {
+            for (Source source : sources.items) {
+                int[] postings = source.postings.docs;
+                for (int i = 0; i < source.postings.size; i++) {
+                    if (best[postings[i]] < source.weight) {
+                        best[postings[i]] = (byte) source.weight;
+                    }
+                }
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (best[docs[i]] > 0) {
+                    docs[kept] = docs[i];
+                    scores[kept] = scores[i] + best[docs[i]];
+                    kept++;
+                }
+            }
+            size = kept;
+            for (Source source : sources.items) {
+                int[] postings = source.postings.docs;
+                for (int i = 0; i < source.postings.size; i++) {
+                    best[postings[i]] = 0;
+                }
+            }
+        }
+    }
+}
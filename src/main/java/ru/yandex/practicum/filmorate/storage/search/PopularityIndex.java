@@ -0,0 +1,226 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class PopularityIndex implements FilmIndex {
+
+    private static final Comparator<Doc> POPULARITY = Comparator
+            .comparingInt((Doc doc) -> doc.likes).reversed()
+            .thenComparingLong(doc -> doc.id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Rankings rankings = new Rankings();
+
+    @Override
+    public Loader newLoader() {
+        Rankings rebuilt = new Rankings();
+        return new Loader() {
+            @Override
+            public void add(Film film) {
+                rebuilt.put(makeDoc(film));
+            }
+
+            @Override
+            public void commit() {
+                Lock writeLock = lock.writeLock();
+                writeLock.lock();
+                try {
+                    rankings = rebuilt;
+                } finally {
+                    writeLock.unlock();
+                }
+                log.info("Индекс популярности: фильмов {}, сочетаний фильтров {}.", rebuilt.docs.size(),
+                        rebuilt.byFilter.size());
+            }
+        };
+    }
+
+    @Override
+    public void put(Film film) {
+        Doc doc = makeDoc(film);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            rankings.put(doc);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        addLikes(filmId, 1);
+    }
+
+    @Override
+    public void deleteLike(long filmId, long userId) {
+        addLikes(filmId, -1);
+    }
+
+    @Override
+    public void importLikes(List<Like> likes, Map<Long, Integer> likeCounts) {
+        setLikes(likeCounts);
+    }
+
+    public void addLikes(long filmId, int delta) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Doc doc = rankings.docs.get(filmId);
+            if (doc != null) {
+                rankings.put(doc.withLikes(Math.max(0, doc.likes + delta)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void setLikes(Map<Long, Integer> likeCounts) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            likeCounts.forEach((filmId, count) -> {
+                Doc doc = rankings.docs.get(filmId);
+                if (doc != null && doc.likes != count) {
+                    rankings.put(doc.withLikes(count));
+                }
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public List<Long> getTop(int count, Integer genreId, Integer mpaId, Integer year) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return rankings.top(count, genreId, mpaId, year);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static Doc makeDoc(Film film) {
+        int[] genres = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray();
+        return new Doc(film.getId(), FilmSearchIndex.likesOf(film), genres,
+                film.getMpa() == null ? 0 : film.getMpa().getId(),
+                film.getReleaseDate() == null ? 0 : film.getReleaseDate().getYear());
+    }
+
+    private static final class Rankings {
+        private final Map<Long, Doc> docs = new HashMap<>();
+        private final Map<Filter, NavigableSet<Doc>> byFilter = new HashMap<>();
+
+        private void put(Doc doc) {
+            Doc old = docs.put(doc.id, doc);
+            if (old != null) {
+                for (Filter filter : old.filters()) {
+                    NavigableSet<Doc> ranking = byFilter.get(filter);
+                    if (ranking != null && ranking.remove(old) && ranking.isEmpty()) {
+                        byFilter.remove(filter);
+                    }
+                }
+            }
+            for (Filter filter : doc.filters()) {
+                byFilter.computeIfAbsent(filter, k -> new TreeSet<>(POPULARITY)).add(doc);
+            }
+        }
+
+        private List<Long> top(int count, Integer genreId, Integer mpaId, Integer year) {
+            NavigableSet<Doc> ranking = byFilter.get(new Filter(genreId == null ? 0 : genreId,
+                    mpaId == null ? 0 : mpaId, year == null ? 0 : year));
+            if (ranking == null) {
+                return List.of();
+            }
+            List<Long> top = new ArrayList<>(Math.max(0, Math.min(count, ranking.size())));
+            Iterator<Doc> iterator = ranking.iterator();
+            while (top.size() < count && iterator.hasNext()) {
+                top.add(iterator.next().id);
+            }
+            return top;
+        }
+    }
+
+    private static final class Filter {
+        private final int genreId;
+        private final int mpaId;
+        private final int year;
+
+        private Filter(int genreId, int mpaId, int year) {
+            this.genreId = genreId;
+            this.mpaId = mpaId;
+            this.year = year;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            Filter other = (Filter) o;
+            return genreId == other.genreId && mpaId == other.mpaId && year == other.year;
+        }
+
+        @Override
+        public int hashCode() {
+            return (genreId * 31 + mpaId) * 31 + year;
+        }
+    }
+
+    private static final class Doc {
+        private final long id;
+        private final int likes;
+        private final int[] genres;
+        private final int mpa;
+        private final int year;
+
+        private Doc(long id, int likes, int[] genres, int mpa, int year) {
+            this.id = id;
+            this.likes = likes;
+            this.genres = genres;
+            this.mpa = mpa;
+            this.year = year;
+        }
+
+        private Doc withLikes(int likes) {
+            return new Doc(id, likes, genres, mpa, year);
+        }
+
+        private Filter[] filters() {
+            int[] genreIds = Arrays.copyOf(genres, genres.length + 1);
+            int[] mpaIds = mpa == 0 ? new int[]{0} : new int[]{0, mpa};
+            int[] years = year == 0 ? new int[]{0} : new int[]{0, year};
+            Filter[] filters = new Filter[genreIds.length * mpaIds.length * years.length - 1];
+            int n = 0;
+            for (int genreId : genreIds) {
+                for (int mpaId : mpaIds) {
+                    for (int filmYear : years) {
+                        if (genreId != 0 || mpaId != 0 || filmYear != 0) {
+                            filters[n++] = new Filter(genreId, mpaId, filmYear);
+                        }
+                    }
+                }
+            }
+            return filters;
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class SimilarFilmsIndex implements FilmIndex {
+    private static final int LEAF_SIZE = 64;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int neighborCount;
+    private final int parallelism;
+    private final int rebuildAfter;
+    private final Object recomputeLock = new Object();
+    private final ExecutorService rebuilds = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similar-films-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Matrix matrix = new Matrix();
+    private Map<Long, Neighbors> neighbors = new HashMap<>();
+    private final Map<Long, LongIdSet> dirty = new HashMap<>();
+    private long modifications;
+    private long rebuiltModifications;
+    private CompletableFuture<Void> scheduledRebuild;
+    private CompletableFuture<Void> scheduledRefresh;
+
+    public SimilarFilmsIndex(@Value("${filmorate.recommendations.neighbors}") int neighborCount,
+                             @Value("${filmorate.recommendations.parallelism}") int parallelism,
+                             @Value("${filmorate.recommendations.rebuild-after}") int rebuildAfter) {
+        this.neighborCount = neighborCount;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.rebuildAfter = rebuildAfter;
+    }
+
+    @Override
+    public Loader newLoader() {
+        Matrix rebuilt = new Matrix();
+        return new Loader() {
+            @Override
+            public void add(Film film) {
+                if (film.getLikes() != null) {
+                    for (Long userId : film.getLikes()) {
+                        rebuilt.add(film.getId(), userId);
+                    }
+                }
+            }
+
+            @Override
+            public void commit() {
+                Map<Long, Neighbors> computed = computeNeighbors(rebuilt.snapshot(), parallelism);
+                Lock writeLock = lock.writeLock();
+                writeLock.lock();
+                try {
+                    matrix = rebuilt;
+                    neighbors = computed;
+                    dirty.clear();
+                    rebuiltModifications = modifications;
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        };
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilds.shutdownNow();
+    }
+
+    public void rebuild(int parallelism) {
+        synchronized (recomputeLock) {
+            Matrix source;
+            Snapshot snapshot;
+            long snapshotModifications;
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                source = matrix;
+                snapshot = matrix.snapshot();
+                snapshotModifications = modifications;
+                dirty.clear();
+            } finally {
+                writeLock.unlock();
+            }
+            Map<Long, Neighbors> computed = computeNeighbors(snapshot, parallelism);
+            boolean stale;
+            writeLock.lock();
+            try {
+                if (matrix != source) {
+                    return;
+                }
+                neighbors = computed;
+                rebuiltModifications = snapshotModifications;
+                stale = !dirty.isEmpty();
+            } finally {
+                writeLock.unlock();
+            }
+            if (stale) {
+                scheduleRefresh();
+            }
+        }
+    }
+
+    public synchronized CompletableFuture<Void> scheduleRefresh() {
+        if (scheduledRefresh == null) {
+            scheduledRefresh = CompletableFuture.runAsync(() -> {
+                synchronized (this) {
+                    scheduledRefresh = null;
+                }
+                refresh();
+            }, rebuilds);
+        }
+        return scheduledRefresh;
+    }
+
+    synchronized CompletableFuture<Void> scheduleRebuild() {
+        if (scheduledRebuild == null) {
+            scheduledRebuild = CompletableFuture.runAsync(() -> {
+                synchronized (this) {
+                    scheduledRebuild = null;
+                }
+                rebuild(parallelism);
+            }, rebuilds);
+        }
+        return scheduledRebuild;
+    }
+
+    @Override
+    public void put(Film film) {
+        LongIdSet likes = film.getLikes() == null ? new LongIdSet() : LongIdSet.copyOf(film.getLikes());
+        boolean changed = false;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            LongIdSet current = LongIdSet.copyOf(matrix.usersByFilm.get(film.getId()));
+            for (int i = 0; i < current.size(); i++) {
+                if (!likes.containsId(current.getId(i))) {
+                    changed |= remove(film.getId(), current.getId(i));
+                }
+            }
+            for (int i = 0; i < likes.size(); i++) {
+                if (!current.containsId(likes.getId(i))) {
+                    changed |= add(film.getId(), likes.getId(i));
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (changed) {
+            scheduleRefresh();
+        }
+    }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        boolean changed;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed = add(filmId, userId);
+        } finally {
+            writeLock.unlock();
+        }
+        if (changed) {
+            scheduleRefresh();
+        }
+    }
+
+    @Override
+    public void deleteLike(long filmId, long userId) {
+        boolean changed;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed = remove(filmId, userId);
+        } finally {
+            writeLock.unlock();
+        }
+        if (changed) {
+            scheduleRefresh();
+        }
+    }
+
+    @Override
+    public void importLikes(List<Like> likes, Map<Long, Integer> likeCounts) {
+        int added = 0;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Like like : likes) {
+                if (matrix.add(like.getFilmId(), like.getUserId())) {
+                    added++;
+                }
+            }
+            modifications += added;
+        } finally {
+            writeLock.unlock();
+        }
+        if (added > 0) {
+            scheduleRebuild();
+        }
+    }
+
+    public List<Long> getSimilar(long filmId, int count) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Neighbors similar = neighbors.get(filmId);
+            if (similar == null) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(count, similar.size));
+            for (int i = 0; i < similar.size && ids.size() < count; i++) {
+                ids.add(similar.ids[i]);
+            }
+            return ids;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Long> recommend(long userId, int count) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            LongIdSet liked = matrix.filmsByUser.get(userId);
+            if (liked == null) {
+                return List.of();
+            }
+            Map<Long, Double> scores = new HashMap<>();
+            for (int i = 0; i < liked.size(); i++) {
+                Neighbors similar = neighbors.get(liked.getId(i));
+                if (similar == null) {
+                    continue;
+                }
+                for (int j = 0; j < similar.size; j++) {
+                    if (!liked.containsId(similar.ids[j])) {
+                        scores.merge(similar.ids[j], (double) similar.scores[j], Double::sum);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(count)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private boolean add(long filmId, long userId) {
+        if (!matrix.add(filmId, userId)) {
+            return false;
+        }
+        changed(filmId, userId);
+        return true;
+    }
+
+    private boolean remove(long filmId, long userId) {
+        if (!matrix.remove(filmId, userId)) {
+            return false;
+        }
+        changed(filmId, userId);
+        return true;
+    }
+
+    private void changed(long filmId, long userId) {
+        modifications++;
+        dirty.computeIfAbsent(filmId, k -> new LongIdSet()).addId(userId);
+    }
+
+    private void refresh() {
+        synchronized (recomputeLock) {
+            Map<Long, LongIdSet> films;
+            boolean full;
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                films = new HashMap<>(dirty);
+                full = modifications - rebuiltModifications >= rebuildAfter;
+                if (!full) {
+                    dirty.clear();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (full) {
+                rebuild(parallelism);
+                return;
+            }
+            films.forEach(this::refresh);
+        }
+    }
+
+    private void refresh(long filmId, LongIdSet users) {
+        Matrix source;
+        Map<Long, Float> scores;
+        Set<Long> affected;
+        Map<Long, Neighbors> replaced = new HashMap<>();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            source = matrix;
+            scores = scores(filmId);
+            affected = new HashSet<>(scores.keySet());
+            for (int i = 0; i < users.size(); i++) {
+                LongIdSet films = matrix.filmsByUser.get(users.getId(i));
+                if (films != null) {
+                    affected.addAll(films);
+                }
+            }
+            affected.remove(filmId);
+            for (long other : affected) {
+                Neighbors similar = neighbors.get(other);
+                int position = similar == null ? -1 : similar.indexOf(filmId);
+                if (position >= 0 && similar.size == neighborCount
+                        && scores.getOrDefault(other, 0f) < similar.scores[position]) {
+                    replaced.put(other, neighbors(scores(other)));
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        Neighbors own = neighbors(scores);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (matrix != source) {
+                return;
+            }
+            replace(filmId, own);
+            for (long other : affected) {
+                if (replaced.containsKey(other)) {
+                    replace(other, replaced.get(other));
+                } else {
+                    upsert(other, filmId, scores.getOrDefault(other, 0f));
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Map<Long, Float> scores(long filmId) {
+        LongIdSet users = matrix.usersByFilm.get(filmId);
+        if (users == null) {
+            return Map.of();
+        }
+        Map<Long, Integer> coLikes = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            LongIdSet films = matrix.filmsByUser.get(users.getId(i));
+            for (int j = 0; j < films.size(); j++) {
+                if (films.getId(j) != filmId) {
+                    coLikes.merge(films.getId(j), 1, Integer::sum);
+                }
+            }
+        }
+        Map<Long, Float> scores = new HashMap<>();
+        coLikes.forEach((other, count) -> scores.put(other,
+                (float) (count / Math.sqrt((double) users.size() * matrix.usersByFilm.get(other).size()))));
+        return scores;
+    }
+
+    private Neighbors neighbors(Map<Long, Float> scores) {
+        Neighbors similar = new Neighbors(neighborCount);
+        scores.forEach(similar::offer);
+        return similar;
+    }
+
+    private void replace(long filmId, Neighbors similar) {
+        if (similar.size == 0) {
+            neighbors.remove(filmId);
+        } else {
+            neighbors.put(filmId, similar);
+        }
+    }
+
+    private void upsert(long filmId, long other, float score) {
+        Neighbors similar = neighbors.get(filmId);
+        if (similar == null) {
+            if (score <= 0) {
+                return;
+            }
+            similar = new Neighbors(neighborCount);
+            neighbors.put(filmId, similar);
+        }
+        similar.remove(other);
+        similar.offer(other, score);
+        if (similar.size == 0) {
+            neighbors.remove(filmId);
+        }
+    }
+
+    private Map<Long, Neighbors> computeNeighbors(Snapshot snapshot, int parallelism) {
+        long start = System.currentTimeMillis();
+        Neighbors[] computed = new Neighbors[snapshot.films.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new NeighborsTask(snapshot, computed, 0, computed.length));
+        } finally {
+            pool.shutdown();
+        }
+        Map<Long, Neighbors> result = new HashMap<>(computed.length * 4 / 3 + 1);
+        for (int i = 0; i < computed.length; i++) {
+            if (computed[i] != null) {
+                result.put(snapshot.films[i], computed[i]);
+            }
+        }
+        log.info("Похожие фильмы пересчитаны: фильмов {}, пользователей {}, потоков {} за {} мс.",
+                snapshot.films.length, snapshot.filmsOfUser.length, parallelism,
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private Neighbors computeNeighbors(Snapshot snapshot, int film, Scratch scratch) {
+        int[] counts = scratch.counts(snapshot.films.length);
+        int[] touched = scratch.touched(snapshot.films.length);
+        int touchedCount = 0;
+        for (int user : snapshot.usersOfFilm[film]) {
+            for (int other : snapshot.filmsOfUser[user]) {
+                if (other != film && counts[other]++ == 0) {
+                    touched[touchedCount++] = other;
+                }
+            }
+        }
+        if (touchedCount == 0) {
+            return null;
+        }
+        Neighbors similar = new Neighbors(neighborCount);
+        double users = snapshot.usersOfFilm[film].length;
+        for (int i = 0; i < touchedCount; i++) {
+            int other = touched[i];
+            similar.offer(snapshot.films[other],
+                    (float) (counts[other] / Math.sqrt(users * snapshot.usersOfFilm[other].length)));
+            counts[other] = 0;
+        }
+        return similar;
+    }
+
+    private final class NeighborsTask extends RecursiveAction {
+        private final Snapshot snapshot;
+        private final Neighbors[] computed;
+        private final int from;
+        private final int to;
+
+        private NeighborsTask(Snapshot snapshot, Neighbors[] computed, int from, int to) {
+            this.snapshot = snapshot;
+            this.computed = computed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                Scratch scratch = SCRATCH.get();
+                for (int film = from; film < to; film++) {
+                    computed[film] = computeNeighbors(snapshot, film, scratch);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new NeighborsTask(snapshot, computed, from, middle),
+                    new NeighborsTask(snapshot, computed, middle, to));
+        }
+    }
+
+    private static final class Matrix {
+        private final Map<Long, LongIdSet> usersByFilm = new HashMap<>();
+        private final Map<Long, LongIdSet> filmsByUser = new HashMap<>();
+
+        private boolean add(long filmId, long userId) {
+            if (!usersByFilm.computeIfAbsent(filmId, k -> new LongIdSet()).addId(userId)) {
+                return false;
+            }
+            filmsByUser.computeIfAbsent(userId, k -> new LongIdSet()).addId(filmId);
+            return true;
+        }
+
+        private boolean remove(long filmId, long userId) {
+            LongIdSet users = usersByFilm.get(filmId);
+            if (users == null || !users.removeId(userId)) {
+                return false;
+            }
+            if (users.isEmpty()) {
+                usersByFilm.remove(filmId);
+            }
+            LongIdSet films = filmsByUser.get(userId);
+            films.removeId(filmId);
+            if (films.isEmpty()) {
+                filmsByUser.remove(userId);
+            }
+            return true;
+        }
+
+        private Snapshot snapshot() {
+            long[] films = usersByFilm.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] users = filmsByUser.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            return new Snapshot(films, ordinals(films, usersByFilm, users), ordinals(users, filmsByUser, films));
+        }
+
+        private static int[][] ordinals(long[] keys, Map<Long, LongIdSet> rows, long[] columns) {
+            int[][] result = new int[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                LongIdSet row = rows.get(keys[i]);
+                int[] ordinals = new int[row.size()];
+                for (int j = 0; j < ordinals.length; j++) {
+                    ordinals[j] = Arrays.binarySearch(columns, row.getId(j));
+                }
+                result[i] = ordinals;
+            }
+            return result;
+        }
+    }
+
+    private static final class Snapshot {
+        private final long[] films;
+        private final int[][] usersOfFilm;
+        private final int[][] filmsOfUser;
+
+        private Snapshot(long[] films, int[][] usersOfFilm, int[][] filmsOfUser) {
+            this.films = films;
+            this.usersOfFilm = usersOfFilm;
+            this.filmsOfUser = filmsOfUser;
+        }
+    }
+
+    private static final class Neighbors {
+        private final long[] ids;
+        private final float[] scores;
+        private int size;
+
+        private Neighbors(int capacity) {
+            ids = new long[capacity];
+            scores = new float[capacity];
+        }
+
+        private void offer(long id, float score) {
+            if (score <= 0 || size == ids.length && !before(id, score, size - 1)) {
+                return;
+            }
+            int position = Math.min(size, ids.length - 1);
+            while (position > 0 && before(id, score, position - 1)) {
+                position--;
+            }
+            int moved = Math.min(size, ids.length - 1) - position;
+            System.arraycopy(ids, position, ids, position + 1, moved);
+            System.arraycopy(scores, position, scores, position + 1, moved);
+            ids[position] = id;
+            scores[position] = score;
+            size = Math.min(size + 1, ids.length);
+        }
+
+        private void remove(long id) {
+            int i = indexOf(id);
+            if (i >= 0) {
+                System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                System.arraycopy(scores, i + 1, scores, i, size - i - 1);
+                size--;
+            }
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean before(long id, float score, int position) {
+            return score > scores[position] || score == scores[position] && id < ids[position];
+        }
+    }
+
+    private static final class Scratch {
+        private int[] counts = new int[0];
+        private int[] touched = new int[0];
+
+        private int[] counts(int films) {
+            if (counts.length < films) {
+                counts = new int[films];
+            }
+            return counts;
+        }
+
+        private int[] touched(int films) {
+            if (touched.length < films) {
+                touched = new int[films];
+            }
+            return touched;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class FriendGraph {
+    private static final int PAGE_SIZE = 1000;
+    private static final int[] NONE = new int[0];
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final UserStorage userStorage;
+    private final int maxVisitedEdges;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private Adjacency adjacency = new Adjacency(0);
+    private Set<Long> changedDuringRebuild;
+
+    public FriendGraph(UserStorage userStorage,
+                       @Value("${filmorate.suggestions.max-visited-edges}") int maxVisitedEdges) {
+        this.userStorage = userStorage;
+        this.maxVisitedEdges = maxVisitedEdges;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                changedDuringRebuild = new HashSet<>();
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                load();
+            } finally {
+                writeLock.lock();
+                try {
+                    changedDuringRebuild = null;
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        long[] from = new long[PAGE_SIZE];
+        long[] to = new long[PAGE_SIZE];
+        int edges = 0;
+        long after = 0;
+        List<User> page;
+        do {
+            page = userStorage.getUsers(after, PAGE_SIZE);
+            for (User user : page) {
+                if (user.getFriends() != null) {
+                    for (Long friendId : user.getFriends()) {
+                        if (edges == from.length) {
+                            from = Arrays.copyOf(from, edges * 2);
+                            to = Arrays.copyOf(to, edges * 2);
+                        }
+                        from[edges] = user.getId();
+                        to[edges] = friendId;
+                        edges++;
+                    }
+                }
+                after = user.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        Adjacency rebuilt = Adjacency.of(from, to, edges);
+        int replayed = 0;
+        Lock writeLock = lock.writeLock();
+        while (true) {
+            List<Long> changed;
+            writeLock.lock();
+            try {
+                if (changedDuringRebuild.isEmpty()) {
+                    adjacency = rebuilt;
+                    break;
+                }
+                changed = new ArrayList<>(changedDuringRebuild);
+                changedDuringRebuild.clear();
+            } finally {
+                writeLock.unlock();
+            }
+            for (int i = 0; i < changed.size(); i += PAGE_SIZE) {
+                List<Long> slice = changed.subList(i, Math.min(changed.size(), i + PAGE_SIZE));
+                for (User user : userStorage.getUsersByIds(slice)) {
+                    rebuilt.replace(user.getId(), LongIdSet.copyOf(user.getFriends()));
+                }
+            }
+            replayed += changed.size();
+        }
+        log.info("Граф друзей построен: пользователей {}, связей {}, повторено изменений {} за {} мс.",
+                rebuilt.size, edges, replayed, System.currentTimeMillis() - start);
+    }
+
+    public void addFriend(long userId, long friendId) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed(userId);
+            adjacency.add(userId, friendId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void deleteFriend(long userId, long friendId) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed(userId);
+            adjacency.remove(userId, friendId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void addFriendships(List<Friendship> friendships) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Friendship friendship : friendships) {
+                changed(friendship.getUserId());
+                adjacency.add(friendship.getUserId(), friendship.getFriendId());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void put(User user) {
+        LongIdSet friends = LongIdSet.copyOf(user.getFriends());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed(user.getId());
+            adjacency.replace(user.getId(), friends);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void changed(long userId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(userId);
+        }
+    }
+
+    public List<Long> suggest(long userId, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return adjacency.suggest(userId, limit, maxVisitedEdges, SCRATCH.get());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static final class Adjacency {
+        private final Ordinals ordinals;
+        private long[] ids;
+        private int[][] out;
+        private int[][] in;
+        private int size;
+
+        private Adjacency(int capacity) {
+            ordinals = new Ordinals(capacity);
+            ids = new long[Math.max(capacity, 16)];
+            out = new int[ids.length][];
+            in = new int[ids.length][];
+        }
+
+        private static Adjacency of(long[] from, long[] to, int edges) {
+            long[] users = Arrays.copyOf(from, edges * 2);
+            System.arraycopy(to, 0, users, edges, edges);
+            users = Arrays.stream(users).sorted().distinct().toArray();
+            Adjacency adjacency = new Adjacency(users.length);
+            for (long id : users) {
+                adjacency.ordinal(id);
+            }
+            int[] outDegrees = new int[users.length];
+            int[] inDegrees = new int[users.length];
+            int[] sources = new int[edges];
+            int[] targets = new int[edges];
+            for (int i = 0; i < edges; i++) {
+                sources[i] = Arrays.binarySearch(users, from[i]);
+                targets[i] = Arrays.binarySearch(users, to[i]);
+                outDegrees[sources[i]]++;
+                inDegrees[targets[i]]++;
+            }
+            for (int i = 0; i < users.length; i++) {
+                adjacency.out[i] = outDegrees[i] == 0 ? NONE : new int[outDegrees[i]];
+                adjacency.in[i] = inDegrees[i] == 0 ? NONE : new int[inDegrees[i]];
+            }
+            Arrays.fill(outDegrees, 0);
+            Arrays.fill(inDegrees, 0);
+            for (int i = 0; i < edges; i++) {
+                adjacency.out[sources[i]][outDegrees[sources[i]]++] = targets[i];
+                adjacency.in[targets[i]][inDegrees[targets[i]]++] = sources[i];
+            }
+            for (int i = 0; i < users.length; i++) {
+                Arrays.sort(adjacency.out[i]);
+                Arrays.sort(adjacency.in[i]);
+            }
+            return adjacency;
+        }
+
+        private void add(long userId, long friendId) {
+            int user = ordinal(userId);
+            int friend = ordinal(friendId);
+            out[user] = insert(out[user], friend);
+            in[friend] = insert(in[friend], user);
+        }
+
+        private void replace(long userId, LongIdSet friends) {
+            for (long friendId : friendsOf(userId)) {
+                if (!friends.containsId(friendId)) {
+                    remove(userId, friendId);
+                }
+            }
+            for (int i = 0; i < friends.size(); i++) {
+                add(userId, friends.getId(i));
+            }
+        }
+
+        private void remove(long userId, long friendId) {
+            int user = ordinals.get(userId);
+            int friend = ordinals.get(friendId);
+            if (user >= 0 && friend >= 0) {
+                out[user] = delete(out[user], friend);
+                in[friend] = delete(in[friend], user);
+            }
+        }
+
+        private long[] friendsOf(long userId) {
+            int user = ordinals.get(userId);
+            if (user < 0) {
+                return new long[0];
+            }
+            long[] friends = new long[out[user].length];
+            for (int i = 0; i < friends.length; i++) {
+                friends[i] = ids[out[user][i]];
+            }
+            return friends;
+        }
+
+        private List<Long> suggest(long userId, int limit, int maxVisitedEdges, Scratch scratch) {
+            int user = ordinals.get(userId);
+            if (user < 0) {
+                return List.of();
+            }
+            int[] counts = scratch.counts(size);
+            int[] touched = scratch.touched(size);
+            int touchedCount = 0;
+            int[] friends = out[user];
+            long[] byDegree = new long[friends.length];
+            long edges = 0;
+            for (int i = 0; i < friends.length; i++) {
+                byDegree[i] = (long) in[friends[i]].length << 32 | friends[i];
+                edges += in[friends[i]].length;
+                counts[friends[i]] = Integer.MIN_VALUE;
+            }
+            counts[user] = Integer.MIN_VALUE;
+            if (edges > maxVisitedEdges) {
+                Arrays.sort(byDegree);
+            }
+            int visited = 0;
+            for (long key : byDegree) {
+                int friend = (int) key;
+                if (visited + in[friend].length > maxVisitedEdges) {
+                    break;
+                }
+                visited += in[friend].length;
+                for (int candidate : in[friend]) {
+                    if (counts[candidate]++ == 0) {
+                        touched[touchedCount++] = candidate;
+                    }
+                }
+            }
+            for (int follower : in[user]) {
+                if (counts[follower] == 0) {
+                    touched[touchedCount++] = follower;
+                }
+            }
+            long[] top = new long[Math.min(limit, touchedCount)];
+            int topSize = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int candidate = touched[i];
+                long follows = Arrays.binarySearch(out[candidate], user) >= 0 ? 1 : 0;
+                long key = (long) counts[candidate] << 32 | follows << 31 | Integer.MAX_VALUE - candidate;
+                if (topSize < top.length || key > top[topSize - 1]) {
+                    int position = Math.min(topSize, top.length - 1);
+                    while (position > 0 && top[position - 1] < key) {
+                        top[position] = top[position - 1];
+                        position--;
+                    }
+                    top[position] = key;
+                    topSize = Math.min(topSize + 1, top.length);
+                }
+                counts[candidate] = 0;
+            }
+            for (int friend : friends) {
+                counts[friend] = 0;
+            }
+            counts[user] = 0;
+            List<Long> suggestions = new ArrayList<>(topSize);
+            for (int i = 0; i < topSize; i++) {
+                suggestions.add(ids[Integer.MAX_VALUE - (int) (top[i] & Integer.MAX_VALUE)]);
+            }
+            return suggestions;
+        }
+
+        private int ordinal(long id) {
+            int ordinal = ordinals.get(id);
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                out = Arrays.copyOf(out, size * 2);
+                in = Arrays.copyOf(in, size * 2);
+            }
+            ids[size] = id;
+            out[size] = NONE;
+            in[size] = NONE;
+            ordinals.put(id, size);
+            return size++;
+        }
+
+        private static int[] insert(int[] row, int value) {
+            int index = Arrays.binarySearch(row, value);
+            if (index >= 0) {
+                return row;
+            }
+            index = -index - 1;
+            int[] result = new int[row.length + 1];
+            System.arraycopy(row, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(row, index, result, index + 1, row.length - index);
+            return result;
+        }
+
+        private static int[] delete(int[] row, int value) {
+            int index = Arrays.binarySearch(row, value);
+            if (index < 0) {
+                return row;
+            }
+            if (row.length == 1) {
+                return NONE;
+            }
+            int[] result = new int[row.length - 1];
+            System.arraycopy(row, 0, result, 0, index);
+            System.arraycopy(row, index + 1, result, index, row.length - index - 1);
+            return result;
+        }
+    }
+
+    private static final class Ordinals {
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        private Ordinals(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) * 2;
+            keys = new long[tableSize];
+            values = new int[tableSize];
+        }
+
+        private int get(long id) {
+            int mask = keys.length - 1;
+            for (int slot = hash(id) & mask; keys[slot] != 0; slot = slot + 1 & mask) {
+                if (keys[slot] == id) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        private void put(long id, int ordinal) {
+            if ((size + 1) * 2 > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int slot = hash(id) & mask;
+            while (keys[slot] != 0) {
+                slot = slot + 1 & mask;
+            }
+            keys[slot] = id;
+            values[slot] = ordinal;
+            size++;
+        }
+
+        private static int hash(long id) {
+            long mixed = id * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ mixed >>> 32);
+        }
+    }
+
+    private static final class Scratch {
+        private int[] counts = new int[0];
+        private int[] touched = new int[0];
+
+        private int[] counts(int users) {
+            if (counts.length < users) {
+                counts = new int[users];
+            }
+            return counts;
+        }
+
+        private int[] touched(int users) {
+            if (touched.length < users) {
+                touched = new int[users];
+            }
+            return touched;
+        }
+    }
+}
@@ -1,62 +1,195 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 @Component
+@Profile("inmemory")
 public class InMemoryUserStorage implements UserStorage {
 
-    private Map<Long, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
 
-    private static long id = 1;
+    private final AtomicLong nextId = new AtomicLong(1);
 
     @Override
     public User addUser(User user) {
-        if (user.getFriends() == null) {
-            user.setFriends(new HashSet<>());
-        }
-        user.setId(id);
-        users.put(id++, user);
+        User storedUser = stored(user, nextId.getAndIncrement());
+        users.put(storedUser.getId(), storedUser);
+        user.setId(storedUser.getId());
         log.info("Пользователь {} успешно добавлен.", user.getLogin());
-        return user;
+        return snapshot(storedUser);
     }
 
     @Override
     public User updateUser(User user) {
-        if (users.containsKey(user.getId())) {
-            users.remove(user.getId());
-            users.put(user.getId(), user);
-            log.info("Информация о пользователе {} успешно обновлена.", user.getLogin());
-        } else {
-            throw new NotFoundException("пользователь");
-        }
-        return user;
+        User update = stored(user, user.getId());
+        User storedUser = change(user.getId(), stored -> update);
+        log.info("Информация о пользователе {} успешно обновлена.", user.getLogin());
+        return snapshot(storedUser);
     }
 
     @Override
     public User getUserById(Long id) {
-        if (users.containsKey(id)) {
-            return users.get(id);
-        } else {
-            throw new NotFoundException("пользователь");
-        }
+        return snapshot(getStoredUser(id));
     }
 
     @Override
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        List<User> copies = new ArrayList<>();
+        for (User user : users.values()) {
+            copies.add(snapshot(user));
+        }
+        return copies;
     }
 
-    public User removeUserById(Integer id) {
-        if (users.containsKey(id)) {
-            return users.remove(id);
-        } else {
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        List<User> page = new ArrayList<>();
+        for (User user : users.tailMap(after, false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(snapshot(user));
+        }
+        return page;
+    }
+
+    @Override
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        List<User> result = new ArrayList<>();
+        for (Long userId : new TreeSet<>(ids)) {
+            User user = users.get(userId);
+            if (user != null) {
+                result.add(snapshot(user));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        LongIdSet friends = (LongIdSet) getStoredUser(userId).getFriends();
+        LongIdSet otherFriends = (LongIdSet) getStoredUser(otherId).getFriends();
+        return getUsersByIds(friends.intersect(otherFriends));
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        boolean[] added = new boolean[1];
+        change(userId, stored -> {
+            added[0] = !((LongIdSet) stored.getFriends()).containsId(friendId);
+            return added[0] ? withFriends(stored, friends -> friends.addId(friendId)) : stored;
+        });
+        return added[0];
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        boolean[] deleted = new boolean[1];
+        change(userId, stored -> {
+            deleted[0] = ((LongIdSet) stored.getFriends()).containsId(friendId);
+            return deleted[0] ? withFriends(stored, friends -> friends.removeId(friendId)) : stored;
+        });
+        return deleted[0];
+    }
+
+    @Override
+    public void addFriends(Long userId, Collection<Long> friendIds) {
+        change(userId, stored -> withFriends(stored, friends -> friends.addAll(friendIds)));
+    }
+
+    @Override
+    public List<Long> addUsers(List<User> users) {
+        List<Long> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(addUser(user.toBuilder().build()).getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public int addFriendships(List<Friendship> friendships) {
+        int added = 0;
+        for (Friendship friendship : friendships) {
+            if (addFriend(friendship.getUserId(), friendship.getFriendId())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public LongIdSet getExistingIds(Collection<Long> ids) {
+        LongIdSet existingIds = new LongIdSet();
+        for (Long id : ids) {
+            if (users.containsKey(id)) {
+                existingIds.addId(id);
+            }
+        }
+        return existingIds;
+    }
+
+    public User removeUserById(Long id) {
+        User storedUser = users.remove(id);
+        if (storedUser == null) {
+            throw new NotFoundException("пользователь");
+        }
+        return snapshot(storedUser);
+    }
+
+    private User getStoredUser(Long id) {
+        User user = users.get(id);
+        if (user == null) {
             throw new NotFoundException("пользователь");
         }
+        return user;
+    }
+
+    private User change(Long id, UnaryOperator<User> change) {
+        User changed = users.computeIfPresent(id, (key, stored) -> change.apply(stored));
+        if (changed == null) {
+            throw new NotFoundException("пользователь");
+        }
+        return changed;
+    }
+
+    private static User withFriends(User storedUser, Consumer<LongIdSet> change) {
+        LongIdSet friends = new LongIdSet(storedUser.getFriends());
+        change.accept(friends);
+        return storedUser.toBuilder().friends(friends.freeze()).build();
+    }
+
+    private static User stored(User user, Long id) {
+        User storedUser = copyOf(user, id);
+        ((LongIdSet) storedUser.getFriends()).freeze();
+        return storedUser;
+    }
+
+    private static User snapshot(User storedUser) {
+        return copyOf(storedUser, storedUser.getId());
+    }
+
+    private static User copyOf(User user, Long id) {
+        return User.builder()
+                .id(id)
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .friends(LongIdSet.copyOf(user.getFriends()))
+                .build();
     }
 }
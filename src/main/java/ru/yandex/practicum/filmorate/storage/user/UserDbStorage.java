@@ -1,32 +1,47 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 @Component("userDbStorage")
+@Profile("!inmemory")
 public class UserDbStorage implements UserStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final Cache<Long, User> cache;
+
+    private final EntityCaches entityCaches;
+
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, EntityCaches entityCaches) {
         this.jdbcTemplate = jdbcTemplate;
+        this.cache = entityCaches.users();
+        this.entityCaches = entityCaches;
     }
 
     @Override
@@ -59,6 +74,7 @@ public class UserDbStorage implements UserStorage {
                     user.getBirthday(),
                     user.getId());
             updateFriends(user);
+            cache.invalidate(user.getId());
             return getUserById(user.getId());
         } else {
             throw new NotFoundException("пользователь");
@@ -67,6 +83,10 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User getUserById(Long id) {
+        return entityCaches.getUser(id, this::loadUserById);
+    }
+
+    private User loadUserById(Long id) {
         String sql = "select * from users where user_id = ?";
         try {
         User user = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> makeUser(rs), id);
@@ -81,12 +101,166 @@ public class UserDbStorage implements UserStorage {
     public List<User> getAllUsers() {
         String sql = "select * from users";
         List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs));
-        for (User user : users) {
-            user.setFriends(getUserFriendsFromDb(user));
+        setFriendsFromDb(users, "select user_id, friend_id from friends");
+        return users;
+    }
+
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        String sql = "select * from users where user_id > ? order by user_id limit ?";
+        List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), after, limit);
+        if (!users.isEmpty()) {
+            Object[] idArray = users.stream().map(User::getId).toArray();
+            setFriendsFromDb(users, "select user_id, friend_id from friends where user_id = any(?)", (Object) idArray);
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, User> usersById = new TreeMap<>(entityCaches.getAllPresentUsers(ids));
+        Object[] missingIds = ids.stream().filter(id -> !usersById.containsKey(id)).toArray();
+        if (missingIds.length > 0) {
+            String sql = "select * from users where user_id = any(?)";
+            List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), (Object) missingIds);
+            setFriendsFromDb(users, "select user_id, friend_id from friends where user_id = any(?)",
+                    (Object) missingIds);
+            for (User user : users) {
+                usersById.put(user.getId(), user);
+            }
         }
+        return new ArrayList<>(usersById.values());
+    }
+
+    @Override
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        checkUsersExist(userId, otherId);
+        String commonFriends = "from friends as f1 " +
+                "join friends as f2 on f1.friend_id = f2.friend_id " +
+                "where f1.user_id = ? and f2.user_id = ?";
+        String sql = "select u.* from users as u " +
+                "where u.user_id in (select f1.friend_id " + commonFriends + ") " +
+                "order by u.user_id";
+        List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), userId, otherId);
+        setFriendsFromDb(users, "select user_id, friend_id from friends " +
+                "where user_id in (select f1.friend_id " + commonFriends + ")", userId, otherId);
         return users;
     }
 
+    private void checkUsersExist(Long... ids) {
+        Set<Long> uniqueIds = new HashSet<>(Arrays.asList(ids));
+        Integer found = jdbcTemplate.queryForObject("select count(*) from users where user_id = any(?)",
+                Integer.class, (Object) uniqueIds.toArray());
+        if (found == null || found != uniqueIds.size()) {
+            throw new NotFoundException("пользователь");
+        }
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        try {
+            jdbcTemplate.update("insert into friends (user_id, friend_id) values (?, ?)", userId, friendId);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        cache.invalidate(userId);
+        return true;
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        if (jdbcTemplate.update("delete from friends where user_id = ? and friend_id = ?", userId, friendId) == 0) {
+            return false;
+        }
+        cache.invalidate(userId);
+        return true;
+    }
+
+    @Override
+    public void addFriends(Long userId, Collection<Long> friendIds) {
+        insertFriends(userId, friendIds, "merge into friends (user_id, friend_id) key (user_id, friend_id) " +
+                "values (?, ?)");
+        cache.invalidate(userId);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> addUsers(List<User> users) {
+        String sql = "insert into users (login, name, email, birthday) values (?, ?, ?, ?)";
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"user_id"})) {
+                for (User user : users) {
+                    stmt.setString(1, user.getLogin());
+                    stmt.setString(2, user.getName());
+                    stmt.setString(3, user.getEmail());
+                    stmt.setDate(4, Date.valueOf(user.getBirthday()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                List<Long> keys = new ArrayList<>(users.size());
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids.size() != users.size()) {
+            throw new IncorrectResultSizeDataAccessException(String.format(
+                    "Драйвер вернул %d сгенерированных ключей для пакета из %d строк.", ids.size(), users.size()),
+                    users.size(), ids.size());
+        }
+        return ids;
+    }
+
+    @Override
+    @Transactional
+    public int addFriendships(List<Friendship> friendships) {
+        String sql = "insert into friends (user_id, friend_id) select ?, ? from dual " +
+                "where not exists (select 1 from friends where user_id = ? and friend_id = ?)";
+        int[] inserted = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Friendship friendship = friendships.get(i);
+                ps.setLong(1, friendship.getUserId());
+                ps.setLong(2, friendship.getFriendId());
+                ps.setLong(3, friendship.getUserId());
+                ps.setLong(4, friendship.getFriendId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return friendships.size();
+            }
+        });
+        Set<Long> changedUsers = new HashSet<>();
+        int total = 0;
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                changedUsers.add(friendships.get(i).getUserId());
+                total += inserted[i];
+            }
+        }
+        EntityCaches.afterCommit(() -> cache.invalidateAll(changedUsers));
+        return total;
+    }
+
+    @Override
+    public LongIdSet getExistingIds(Collection<Long> ids) {
+        LongIdSet existingIds = new LongIdSet();
+        if (!ids.isEmpty()) {
+            jdbcTemplate.query("select user_id from users where user_id = any(?)",
+                    rs -> {
+                        existingIds.addId(rs.getLong("user_id"));
+                    }, (Object) ids.toArray());
+        }
+        return existingIds;
+    }
+
     public User makeUser(ResultSet rs) throws SQLException {
         Long id = rs.getLong("user_id");
         String login = rs.getString("login");
@@ -106,16 +280,44 @@ public class UserDbStorage implements UserStorage {
     public void updateFriends(User user) {
         jdbcTemplate.update("delete from friends where user_id = ?", user.getId());
         if (user.getFriends() != null) {
-            for (Long friendId : user.getFriends()) {
-                jdbcTemplate.update("insert into friends (user_id, friend_id) values (?, ?)",
-                        user.getId(), friendId);
+            insertFriends(user.getId(), user.getFriends(), "insert into friends (user_id, friend_id) values (?, ?)");
+        }
+    }
+
+    private void insertFriends(Long userId, Collection<Long> friendIds, String sql) {
+        List<Long> friends = new ArrayList<>(friendIds);
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, userId);
+                ps.setLong(2, friends.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return friends.size();
             }
+        });
+    }
+
+    private void setFriendsFromDb(List<User> users, String sql, Object... args) {
+        Map<Long, LongIdSet> friendsByUser = new HashMap<>();
+        for (User user : users) {
+            LongIdSet friends = new LongIdSet();
+            user.setFriends(friends);
+            friendsByUser.put(user.getId(), friends);
         }
+        jdbcTemplate.query(sql, rs -> {
+            LongIdSet friends = friendsByUser.get(rs.getLong("user_id"));
+            if (friends != null) {
+                friends.addId(rs.getLong("friend_id"));
+            }
+        }, args);
     }
 
     public Set<Long> getUserFriendsFromDb(User user) {
         String sql = "select friend_id from friends where user_id = ?";
         List<Long> friends = jdbcTemplate.queryForList(sql, Long.class, user.getId());
-        return new HashSet<>(friends);
+        return new LongIdSet(friends);
     }
 }
@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserStorage {
@@ -13,4 +16,22 @@ public interface UserStorage {
     public User getUserById(Long id);
 
     public List<User> getAllUsers();
+
+    public List<User> getUsers(long after, int limit);
+
+    public List<User> getUsersByIds(Collection<Long> ids);
+
+    public List<User> getCommonFriends(Long userId, Long otherId);
+
+    public boolean addFriend(Long userId, Long friendId);
+
+    public boolean deleteFriend(Long userId, Long friendId);
+
+    public void addFriends(Long userId, Collection<Long> friendIds);
+
+    public List<Long> addUsers(List<User> users);
+
+    public int addFriendships(List<Friendship> friendships);
+
+    public LongIdSet getExistingIds(Collection<Long> ids);
 }
@@ -1,32 +0,0 @@
-INSERT INTO genre (name)
-VALUES ('Комедия');
-
-INSERT INTO genre (name)
-VALUES ('Драма');
-
-INSERT INTO genre (name)
-VALUES ('Мультфильм');
-
-INSERT INTO genre (name)
-VALUES ('Триллер');
-
-INSERT INTO genre (name)
-VALUES ('Документальный');
-
-INSERT INTO genre (name)
-VALUES ('Боевик');
-
-INSERT INTO MPA (mpa_name)
-VALUES ('G');
-
-INSERT INTO MPA (mpa_name)
-VALUES ('PG');
-
-INSERT INTO MPA (mpa_name)
-VALUES ('PG-13');
-
-INSERT INTO MPA (mpa_name)
-VALUES ('R');
-
-INSERT INTO MPA (mpa_name)
-VALUES ('NC-17');
\ No newline at end of file
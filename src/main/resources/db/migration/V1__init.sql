@@ -43,4 +43,10 @@ CREATE TABLE IF NOT EXISTS film_genre (
 film_id integer NOT NULL,
 genre_id integer NOT NULL,
 CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id)
-);
\ No newline at end of file
+);
+
+MERGE INTO genre (genre_id, name) KEY (genre_id)
+VALUES (1, 'Комедия'), (2, 'Драма'), (3, 'Мультфильм'), (4, 'Триллер'), (5, 'Документальный'), (6, 'Боевик');
+
+MERGE INTO mpa (mpa_id, mpa_name) KEY (mpa_id)
+VALUES (1, 'G'), (2, 'PG'), (3, 'PG-13'), (4, 'R'), (5, 'NC-17');
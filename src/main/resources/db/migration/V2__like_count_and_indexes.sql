@@ -0,0 +1,12 @@
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count integer DEFAULT 0 NOT NULL;
+
+UPDATE film AS f
+SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id);
+
+CREATE INDEX IF NOT EXISTS film_popularity_idx ON film (like_count DESC, film_id);
+
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id, film_id);
+
+CREATE INDEX IF NOT EXISTS friends_friend_idx ON friends (friend_id, user_id);
+
+CREATE INDEX IF NOT EXISTS film_genre_genre_idx ON film_genre (genre_id, film_id);
@@ -1,29 +1,73 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.controller.ErrorHandler;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.metrics.QueryProfiler;
+import ru.yandex.practicum.filmorate.model.DumpResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.QueryStatistics;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.DumpService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.EntityCaches;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.WriteBehindFilmStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDao;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDao;
+import ru.yandex.practicum.filmorate.storage.search.SimilarFilmsIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = "filmorate.profiler.enabled=true")
 @AutoConfigureTestDatabase
+@AutoConfigureMockMvc
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 class FilmorateApplicationTests {
@@ -31,6 +75,18 @@ class FilmorateApplicationTests {
 	private final FilmDbStorage filmDbStorage;
 	private final MpaDao mpaDao;
 	private final GenreDao genreDao;
+	private final JdbcTemplate jdbcTemplate;
+	private final QueryProfiler queryProfiler;
+	private final ErrorHandler errorHandler;
+	private final MeterRegistry meterRegistry;
+	private final ImportService importService;
+	private final DumpService dumpService;
+	private final EntityCaches entityCaches;
+	private final SimilarFilmsIndex similarFilmsIndex;
+	private final FilmService filmService;
+	private final UserService userService;
+	private final MockMvc mockMvc;
+	private final PlatformTransactionManager transactionManager;
 
 	private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -166,6 +222,494 @@ class FilmorateApplicationTests {
 		assertEquals(90, testFilms.get(0).getDuration());
 	}
 
+	@Test
+	@Order(9)
+	public void testGetPopularFilms() {
+		List<Film> popularFilms = filmDbStorage.getPopularFilms(10);
+
+		assertEquals(2, popularFilms.size());
+		assertEquals(1L, popularFilms.get(0).getId());
+		assertEquals(2L, popularFilms.get(1).getId());
+		assertEquals(1, filmDbStorage.getPopularFilms(1).size());
+	}
+
+	@Test
+	@Order(10)
+	public void testAddAndDeleteLike() {
+		assertTrue(filmDbStorage.addLike(2L, 2L));
+		assertFalse(filmDbStorage.addLike(2L, 2L));
+		assertEquals(Set.of(2L), filmDbStorage.getFilmById(2L).getLikes());
+
+		assertTrue(filmDbStorage.deleteLike(2L, 2L));
+		assertFalse(filmDbStorage.deleteLike(2L, 2L));
+		assertTrue(filmDbStorage.getFilmById(2L).getLikes().isEmpty());
+	}
+
+	@Test
+	@Order(11)
+	public void testAddAndDeleteFriend() {
+		assertTrue(userStorage.addFriend(1L, 2L));
+		assertFalse(userStorage.addFriend(1L, 2L));
+		assertEquals(Set.of(2L), userStorage.getUserById(1L).getFriends());
+		assertTrue(userStorage.getUserById(2L).getFriends().isEmpty());
+
+		assertTrue(userStorage.deleteFriend(1L, 2L));
+		assertFalse(userStorage.deleteFriend(1L, 2L));
+		assertTrue(userStorage.getUserById(1L).getFriends().isEmpty());
+
+		userStorage.addFriends(2L, List.of(1L, 1L));
+		assertEquals(Set.of(1L), userStorage.getUserById(2L).getFriends());
+		assertTrue(userStorage.deleteFriend(2L, 1L));
+	}
+
+	@Test
+	@Order(12)
+	public void testGetUsersByIds() {
+		userStorage.addFriend(2L, 1L);
+
+		List<User> users = userStorage.getUsersByIds(List.of(2L, 1L, 100L));
+
+		assertEquals(2, users.size());
+		assertEquals(1L, users.get(0).getId());
+		assertEquals(Set.of(1L), users.get(1).getFriends());
+		assertEquals(Set.of(1L), userStorage.getAllUsers().get(1).getFriends());
+		userStorage.deleteFriend(2L, 1L);
+	}
+
+	@Test
+	@Order(13)
+	public void testGetCommonFriends() {
+		User testUser3 = User.builder()
+				.name("user3Name")
+				.login("user3Login")
+				.email("user3@mail.com")
+				.birthday(LocalDate.parse("1999-11-13", formatter))
+				.build();
+		User user3 = userStorage.addUser(testUser3);
+		userStorage.addFriend(1L, user3.getId());
+		userStorage.addFriend(2L, user3.getId());
+		userStorage.addFriend(1L, 2L);
+
+		List<User> commonFriends = userStorage.getCommonFriends(1L, 2L);
+
+		assertEquals(1, commonFriends.size());
+		assertEquals(user3.getId(), commonFriends.get(0).getId());
+		assertTrue(userStorage.getCommonFriends(2L, user3.getId()).isEmpty());
+		assertThrows(NotFoundException.class, () -> userStorage.getCommonFriends(1L, 100L));
+	}
+
+	@Test
+	@Order(14)
+	public void testKeysetPagination() {
+		List<User> users = userStorage.getUsers(1L, 1);
+		List<Film> films = filmDbStorage.getFilms(0L, 10);
+
+		assertEquals(1, users.size());
+		assertEquals(2L, users.get(0).getId());
+		assertEquals(2, films.size());
+		assertEquals(1L, films.get(0).getId());
+		assertTrue(filmDbStorage.getFilms(2L, 10).isEmpty());
+	}
+
+	@Test
+	@Order(15)
+	public void testLikeCountFollowsLikes() {
+		String sql = "SELECT COUNT(*) FROM film AS f " +
+				"WHERE f.like_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id)";
+		filmDbStorage.addLike(2L, 1L);
+		filmDbStorage.addLike(2L, 2L);
+		filmDbStorage.addLike(2L, 2L);
+		filmDbStorage.deleteLike(1L, 1L);
+		assertEquals(0, jdbcTemplate.queryForObject(sql, Integer.class));
+		assertEquals(2L, filmDbStorage.getPopularFilms(1).get(0).getId());
+
+		String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT film_id FROM film " +
+				"ORDER BY like_count DESC, film_id LIMIT 10", String.class);
+		assertTrue(plan.toUpperCase().contains("FILM_POPULARITY_IDX"));
+	}
+
+	@Test
+	@Order(16)
+	public void testQueryProfiler() {
+		queryProfiler.reset();
+		filmDbStorage.getFilms(0L, 10);
+		filmDbStorage.addLike(1L, 2L);
+
+		List<QueryStatistics> statistics = queryProfiler.getStatistics();
+		QueryStatistics filmPage = statistics.stream()
+				.filter(query -> query.getSql().equals("SELECT f.* FROM film AS f WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?"))
+				.findFirst()
+				.orElseThrow();
+		QueryStatistics likeCount = statistics.stream()
+				.filter(query -> query.getSql().startsWith("UPDATE film SET like_count = like_count + ?"))
+				.findFirst()
+				.orElseThrow();
+		assertEquals(1, filmPage.getCalls());
+		assertTrue(filmPage.getP99Millis() <= filmPage.getMaxMillis() * 1.125 + 0.001);
+		assertEquals(1, likeCount.getRowsAffected());
+	}
+
+	@Test
+	@Order(17)
+	public void testBatchImport() {
+		LocalDate birthday = LocalDate.parse("1990-01-01", formatter);
+		User batchUser = User.builder().login("batch1").email("batch1@mail.com").birthday(birthday).build();
+		ImportResult users = importService.importUsers(List.of(
+				batchUser,
+				User.builder().login("batch2").email("wrong").birthday(birthday).build(),
+				User.builder().login("batch3").email("batch3@mail.com").birthday(birthday).build()));
+		assertEquals(2, users.getImported());
+		assertEquals(1, users.getFailed());
+		assertEquals(1, users.getErrors().size());
+		Long firstUserId = users.getIds().get(0);
+		assertNull(batchUser.getId());
+		assertEquals("batch1", userStorage.getUserById(firstUserId).getName());
+
+		Film batchFilm = Film.builder().name("batch film").description("d").releaseDate(birthday).duration(90)
+				.mpa(new Mpa(1, null)).genres(Set.of(new Genre(1, null), new Genre(2, null))).build();
+		ImportResult films = importService.importFilms(List.of(
+				batchFilm,
+				Film.builder().name("bad genre").description("d").releaseDate(birthday).duration(90)
+						.mpa(new Mpa(1, null)).genres(Set.of(new Genre(100, null))).build()));
+		assertEquals(1, films.getImported());
+		Long filmId = films.getIds().get(0);
+		assertEquals(0, batchFilm.getId());
+		assertEquals(2, filmDbStorage.getFilmById(filmId).getGenres().size());
+
+		ImportResult likes = importService.importLikes(List.of(
+				new Like(filmId, firstUserId),
+				new Like(filmId, firstUserId),
+				new Like(filmId, 1L),
+				new Like(100L, 1L)));
+		assertEquals(4, likes.getTotal());
+		assertEquals(2, likes.getImported());
+		assertEquals(1, likes.getSkipped());
+		assertEquals(1, likes.getFailed());
+		assertEquals(Set.of(1L, firstUserId), filmDbStorage.getFilmById(filmId).getLikes());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = ?",
+				Integer.class, filmId));
+		assertEquals(0, importService.importLikes(List.of(new Like(filmId, 1L))).getImported());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = ?",
+				Integer.class, filmId));
+
+		ImportResult friendships = importService.importFriendships(List.of(
+				new Friendship(firstUserId, 1L),
+				new Friendship(firstUserId, 1L),
+				new Friendship(firstUserId, firstUserId)));
+		assertEquals(1, friendships.getImported());
+		assertEquals(1, friendships.getSkipped());
+		assertEquals(1, friendships.getFailed());
+		assertEquals(Set.of(1L), userStorage.getUserById(firstUserId).getFriends());
+	}
+
+	@Test
+	@Order(18)
+	public void testDumpAndRestore() throws Exception {
+		mockMvc.perform(get("/admin/dump")).andExpect(status().isNotFound());
+		mockMvc.perform(get("/admin/queries")).andExpect(status().isNotFound());
+		Long lastUserId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+		Film film = filmDbStorage.getFilmById(1L);
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		DumpResult exported = dumpService.exportDump(dump, true);
+		assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class),
+				exported.getRows().get("likes"));
+
+		userStorage.addUser(User.builder().login("extra").name("extra").email("extra@mail.com")
+				.birthday(LocalDate.parse("1990-01-01", formatter)).build());
+		filmDbStorage.deleteLike(1L, 1L);
+
+		DumpResult restored = dumpService.restoreDump(new ByteArrayInputStream(dump.toByteArray()));
+		assertEquals(exported.getRows(), restored.getRows());
+		assertEquals(lastUserId, jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Long.class));
+		assertEquals(film, filmDbStorage.getFilmById(1L));
+		User next = userStorage.addUser(User.builder().login("next").name("next").email("next@mail.com")
+				.birthday(LocalDate.parse("1990-01-01", formatter)).build());
+		assertEquals(lastUserId + 1, next.getId());
+
+		byte[] broken = "filmorate-dump\t2\n@users\tuser_id\n1\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(ValidationException.class, () -> dumpService.restoreDump(new ByteArrayInputStream(broken)));
+		assertEquals(next, userStorage.getUserById(next.getId()));
+
+		Long users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+		Long likes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class);
+		byte[] badSection = ("filmorate-dump\t1\n@users\tuser_id\tlogin\temail\n1\tx\tx@mail.com\n" +
+				"@nope\tid\n").getBytes(StandardCharsets.UTF_8);
+		assertThrows(ValidationException.class, () -> dumpService.restoreDump(new ByteArrayInputStream(badSection)));
+		byte[] truncated = Arrays.copyOf(dump.toByteArray(), dump.size() / 2);
+		assertThrows(IOException.class, () -> dumpService.restoreDump(new ByteArrayInputStream(truncated)));
+		assertEquals(users, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+		assertEquals(likes, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class));
+		assertEquals(next, userStorage.getUserById(next.getId()));
+		assertEquals(film, filmDbStorage.getFilmById(1L));
+		assertEquals(next.getId() + 1, userStorage.addUser(User.builder().login("after").name("after")
+				.email("after@mail.com").birthday(LocalDate.parse("1990-01-01", formatter)).build()).getId());
+	}
+
+	@Test
+	@Order(19)
+	public void testWriteBehindLikes(@TempDir Path journal, @TempDir Path copy) throws IOException {
+		WriteBehindFilmStorage storage = new WriteBehindFilmStorage(filmDbStorage, entityCaches, meterRegistry,
+				1000, 10000, Duration.ofHours(1), journal.toString());
+		storage.start();
+		Long userId = userStorage.addUser(User.builder().login("liker").name("liker").email("liker@mail.com")
+				.birthday(LocalDate.parse("1990-01-01", formatter)).build()).getId();
+
+		assertTrue(storage.addLike(1L, userId));
+		assertFalse(storage.addLike(1L, userId));
+		assertTrue(storage.getFilmById(1L).getLikes().contains(userId));
+		assertFalse(filmDbStorage.getFilmById(1L).getLikes().contains(userId));
+		assertTrue(storage.deleteLike(1L, userId));
+		assertEquals(0, storage.getPendingSize());
+		assertFalse(storage.deleteLike(1L, userId));
+
+		Film film = filmDbStorage.addFilm(Film.builder().name("premiere").description("d")
+				.releaseDate(LocalDate.parse("2000-01-01", formatter)).duration(90).mpa(new Mpa(1, null)).build());
+		List<Long> userIds = jdbcTemplate.queryForList("SELECT user_id FROM users", Long.class);
+		userIds.parallelStream().forEach(id -> assertTrue(storage.addLike(film.getId(), id)));
+		assertThrows(NotFoundException.class, () -> storage.addLike(9999L, userId));
+		storage.addLike(1L, userId);
+		assertEquals(userIds.size() + 1, storage.getPendingSize());
+		assertEquals(film.getId(), storage.getPopularFilms(1).get(0).getId());
+		assertNotEquals(film.getId(), filmDbStorage.getPopularFilms(1).get(0).getId());
+		assertEquals(storage.getPopularFilms(3).stream().map(Film::getId).collect(Collectors.toList()),
+				storage.getAllFilms().stream()
+						.sorted(Comparator.comparingInt((Film f) -> f.getLikes().size()).reversed()
+								.thenComparingLong(Film::getId))
+						.limit(3).map(Film::getId).collect(Collectors.toList()));
+
+		try (var segments = Files.list(journal)) {
+			for (Path segment : (Iterable<Path>) segments::iterator) {
+				Files.copy(segment, copy.resolve(segment.getFileName()));
+			}
+		}
+		WriteBehindFilmStorage recovered = new WriteBehindFilmStorage(filmDbStorage, entityCaches, meterRegistry,
+				1000, 10000, Duration.ofHours(1), copy.toString());
+		recovered.start();
+		assertEquals(userIds.size(), jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = ?",
+				Integer.class, film.getId()));
+		assertTrue(filmDbStorage.getFilmById(1L).getLikes().contains(userId));
+		recovered.stop();
+
+		storage.stop();
+		assertEquals(0, storage.getPendingSize());
+		assertEquals(userIds.size(), filmDbStorage.getFilmById(film.getId()).getLikes().size());
+	}
+
+	@Test
+	@Order(20)
+	public void testSearchFilms() {
+		LocalDate releaseDate = LocalDate.parse("2000-01-01", formatter);
+		Film hedgehog = filmService.addFilm(Film.builder().name("Ёжик в тумане").description("Мультфильм")
+				.releaseDate(releaseDate).duration(10).mpa(new Mpa(1, null)).build());
+		Long importedId = importService.importFilms(List.of(Film.builder().name("Туманность Андромеды")
+				.description("Экранизация романа").releaseDate(releaseDate).duration(77).mpa(new Mpa(1, null))
+				.build())).getIds().get(0);
+
+		assertEquals(List.of(hedgehog), filmService.searchFilms("ежик", "name,description", null));
+		assertEquals(List.of(hedgehog.getId(), importedId), filmService.searchFilms("ТУМАН", "name", 10).stream()
+				.map(Film::getId).collect(Collectors.toList()));
+		assertEquals(List.of(), filmService.searchFilms("туман", "description", null));
+
+		importService.importLikes(List.of(new Like(importedId, 1L)));
+		assertEquals(importedId, filmService.searchFilms("туман", "name", 10).get(0).getId());
+		filmService.deleteLike(importedId, 1L);
+		assertEquals(hedgehog.getId(), filmService.searchFilms("туман", "name", 10).get(0).getId());
+
+		hedgehog.setName("Ёжик");
+		filmService.updateFilm(hedgehog);
+		assertEquals(List.of(importedId), filmService.searchFilms("туман", "name", 10).stream()
+				.map(Film::getId).collect(Collectors.toList()));
+		assertThrows(ValidationException.class, () -> filmService.searchFilms(" ", "name", null));
+		assertThrows(ValidationException.class, () -> filmService.searchFilms("туман", "title", null));
+	}
+
+	@Test
+	@Order(21)
+	public void testFilteredPopularFilms() {
+		Film comedy = filmService.addFilm(Film.builder().name("Комедия").description("d")
+				.releaseDate(LocalDate.parse("2022-05-01", formatter)).duration(90).mpa(new Mpa(3, null))
+				.genres(new TreeSet<>(Set.of(new Genre(1, null)))).build());
+		assertEquals(List.of(comedy), filmService.getPopularFilms(10, 1, 3, 2022));
+		assertTrue(filmService.getPopularFilms(10, null, null, 2022).contains(comedy));
+		assertEquals(List.of(), filmService.getPopularFilms(10, 2, 3, 2022));
+
+		Film drama = filmService.addFilm(comedy.toBuilder().id(0).name("Драма")
+				.genres(new TreeSet<>(Set.of(new Genre(2, null)))).build());
+		filmService.addLike(drama.getId(), 1L);
+		assertEquals(List.of(drama.getId(), comedy.getId()), filmService.getPopularFilms(10, null, 3, 2022).stream()
+				.map(Film::getId).collect(Collectors.toList()));
+
+		comedy.setGenres(new TreeSet<>(Set.of(new Genre(2, null))));
+		filmService.updateFilm(comedy);
+		assertEquals(List.of(), filmService.getPopularFilms(10, 1, 3, 2022));
+		assertEquals(2, filmService.getPopularFilms(10, 2, 3, 2022).size());
+		assertThrows(NotFoundException.class, () -> filmService.getPopularFilms(10, 100, null, null));
+		assertThrows(ValidationException.class, () -> filmService.getPopularFilms(10, null, null, 2022 + 0x10000));
+		assertThrows(ValidationException.class, () -> filmService.getPopularFilms(10, null, null, 0));
+		assertThrows(ValidationException.class, () -> filmService.getPopularFilms(10, null, -1, null));
+		assertEquals(1, filmService.getPopularFilms(0, null, null, null).size());
+		assertEquals(1, filmService.getPopularFilms(-5, null, 3, 2022).size());
+	}
+
+	@Test
+	@Order(22)
+	public void testSimilarFilmsAndRecommendations() {
+		LocalDate birthday = LocalDate.parse("1990-01-01", formatter);
+		User first = userStorage.addUser(User.builder().login("critic1").email("critic1@mail.com")
+				.birthday(birthday).build());
+		User second = userStorage.addUser(User.builder().login("critic2").email("critic2@mail.com")
+				.birthday(birthday).build());
+		Film liked = filmService.addFilm(Film.builder().name("Сталкер").description("d")
+				.releaseDate(LocalDate.parse("1979-05-01", formatter)).duration(160).mpa(new Mpa(1, null)).build());
+		Film similar = filmService.addFilm(liked.toBuilder().id(0).name("Солярис").build());
+		filmService.addLike(liked.getId(), first.getId());
+		filmService.addLike(similar.getId(), first.getId());
+		filmService.addLike(liked.getId(), second.getId());
+		similarFilmsIndex.scheduleRefresh().join();
+
+		assertEquals(List.of(similar.getId()), filmService.getSimilarFilms(liked.getId(), 10).stream()
+				.map(Film::getId).collect(Collectors.toList()));
+		assertEquals(List.of(similar.getId()), filmService.getRecommendations(second.getId(), 10).stream()
+				.map(Film::getId).collect(Collectors.toList()));
+		assertEquals(List.of(), filmService.getRecommendations(first.getId(), 10));
+
+		filmService.deleteLike(similar.getId(), first.getId());
+		similarFilmsIndex.scheduleRefresh().join();
+		assertEquals(List.of(), filmService.getSimilarFilms(liked.getId(), 10));
+		assertEquals(List.of(), filmService.getRecommendations(second.getId(), 10));
+		assertThrows(NotFoundException.class, () -> filmService.getSimilarFilms(9999L, 10));
+		assertThrows(NotFoundException.class, () -> filmService.getRecommendations(9999L, 10));
+	}
+
+	@Test
+	@Order(23)
+	public void testFriendSuggestions() {
+		LocalDate birthday = LocalDate.parse("1990-01-01", formatter);
+		List<User> users = new ArrayList<>();
+		for (int i = 1; i <= 4; i++) {
+			users.add(userService.addUser(User.builder().login("social" + i).email("social" + i + "@mail.com")
+					.birthday(birthday).build()));
+		}
+		long first = users.get(0).getId();
+		long second = users.get(1).getId();
+		long common = users.get(2).getId();
+		long follower = users.get(3).getId();
+		userService.addFriend(first, common);
+		userService.addFriend(second, common);
+		userService.addFriend(follower, first);
+
+		assertEquals(List.of(second, follower), userService.getSuggestions(first, 10).stream()
+				.map(User::getId).collect(Collectors.toList()));
+		assertEquals(1, userService.getCommonFriends(first, second).size());
+
+		userService.addFriend(first, second);
+		assertEquals(List.of(follower), userService.getSuggestions(first, 10).stream()
+				.map(User::getId).collect(Collectors.toList()));
+		userService.deleteFriend(follower, first);
+		assertEquals(List.of(), userService.getSuggestions(first, 10));
+		assertThrows(NotFoundException.class, () -> userService.getSuggestions(9999L, 10));
+	}
+
+	@Test
+	@Order(24)
+	public void testETags() throws Exception {
+		Film film = filmService.addFilm(Film.builder().name("Зеркало").description("d")
+				.releaseDate(LocalDate.parse("1975-03-07", formatter)).duration(108).mpa(new Mpa(1, null)).build());
+		String filmTag = getAsync("/films/" + film.getId(), null, 200);
+		String popularTag = getAsync("/films/popular", null, 200);
+		getAsync("/films/" + film.getId(), filmTag, 304);
+		getAsync("/films/popular", popularTag, 304);
+
+		filmService.addLike(film.getId(), 1L);
+		assertNotEquals(filmTag, getAsync("/films/" + film.getId(), filmTag, 200));
+		assertNotEquals(popularTag, getAsync("/films/popular", popularTag, 200));
+
+		String userTag = getAsync("/users/1", null, 200);
+		getAsync("/users/1", userTag, 304);
+		User stranger = userService.addUser(User.builder().login("stranger").email("stranger@mail.com")
+				.birthday(LocalDate.parse("1990-01-01", formatter)).build());
+		userService.addFriend(1L, stranger.getId());
+		String friendTag = getAsync("/users/1", userTag, 200);
+		userService.deleteFriend(1L, stranger.getId());
+		assertNotEquals(friendTag, getAsync("/users/1", friendTag, 200));
+
+		assertNull(getAsync("/films/9999", "*", 404));
+		assertNull(getAsync("/users/9999", "*", 404));
+		Film untracked = filmDbStorage.addFilm(film.toBuilder().id(0).name("Ностальгия").build());
+		String untrackedTag = getAsync("/films/" + untracked.getId(), null, 200);
+		assertNotNull(untrackedTag);
+		getAsync("/films/" + untracked.getId(), untrackedTag, 304);
+
+		String genresTag = mockMvc.perform(get("/genres")).andExpect(status().isOk()).andReturn()
+				.getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(genresTag);
+		mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genresTag))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	@Order(25)
+	public void testSerializedResponses() throws Exception {
+		byte[] genres = mockMvc.perform(get("/genres")).andExpect(status().isOk()).andReturn()
+				.getResponse().getContentAsByteArray();
+		assertArrayEquals(genres, mockMvc.perform(get("/genres")).andExpect(status().isOk()).andReturn()
+				.getResponse().getContentAsByteArray());
+		assertTrue(new String(genres, StandardCharsets.UTF_8).startsWith("[{\"id\":1,"));
+		mockMvc.perform(get("/mpa/1")).andExpect(status().isOk());
+		mockMvc.perform(get("/mpa/100")).andExpect(status().isNotFound());
+
+		Film film = filmService.addFilm(Film.builder().name("Солярис").description("d")
+				.releaseDate(LocalDate.parse("1972-03-20", formatter)).duration(169).mpa(new Mpa(1, null)).build());
+		String before = getAsyncBody("/films/popular?count=1000");
+		assertEquals(before, getAsyncBody("/films/popular?count=1000"));
+		filmService.addLike(film.getId(), 2L);
+		String after = getAsyncBody("/films/popular?count=1000");
+		assertNotEquals(before, after);
+		assertTrue(after.contains("Солярис"));
+	}
+
+	@Test
+	@Order(26)
+	public void testCacheIsInvalidatedAfterCommit() {
+		Film film = filmService.addFilm(Film.builder().name("Сталкер").description("d")
+				.releaseDate(LocalDate.parse("1979-05-25", formatter)).duration(163).mpa(new Mpa(1, null)).build());
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+		transaction.executeWithoutResult(status -> {
+			assertTrue(filmDbStorage.addLike(film.getId(), 1L));
+			Film concurrentRead = CompletableFuture.supplyAsync(() -> filmDbStorage.getFilmById(film.getId())).join();
+			assertFalse(concurrentRead.getLikes().contains(1L));
+		});
+		assertTrue(filmDbStorage.getFilmById(film.getId()).getLikes().contains(1L));
+
+		transaction.executeWithoutResult(status -> {
+			Film updated = filmDbStorage.updateFilm(film.toBuilder().name("Солярис").likes(Set.of()).build());
+			assertEquals("Солярис", updated.getName());
+			assertEquals("G", updated.getMpa().getName());
+			status.setRollbackOnly();
+		});
+		Film stored = filmDbStorage.getFilmById(film.getId());
+		assertEquals("Сталкер", stored.getName());
+		assertTrue(stored.getLikes().contains(1L));
+	}
+
+	private String getAsyncBody(String url) throws Exception {
+		MvcResult started = mockMvc.perform(get(url)).andReturn();
+		MvcResult result = mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+		return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+
+	private String getAsync(String url, String ifNoneMatch, int expectedStatus) throws Exception {
+		MvcResult started = mockMvc.perform(ifNoneMatch == null ? get(url)
+				: get(url).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)).andReturn();
+		MvcResult result = mockMvc.perform(asyncDispatch(started)).andReturn();
+		assertEquals(expectedStatus, result.getResponse().getStatus());
+		if (expectedStatus == 304) {
+			assertEquals(0, result.getResponse().getContentLength());
+		}
+		return result.getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
 	@Test
 	public void testGetMpaById() {
 		Mpa mpa = mpaDao.getMpaById(1);
@@ -212,4 +756,33 @@ class FilmorateApplicationTests {
 
 		assertEquals(testGenres, genres);
 	}
+
+	@Test
+	public void testGetUnknownGenreAndMpa() {
+		assertThrows(NotFoundException.class, () -> genreDao.getGenreById(100));
+		assertThrows(NotFoundException.class, () -> genreDao.getGenreById(0));
+		assertThrows(NotFoundException.class, () -> mpaDao.getMpaById(100));
+	}
+
+	@Test
+	public void testErrorCounters() {
+		Counter notFoundErrors = meterRegistry.get("filmorate.errors")
+				.tag("exception", "NotFoundException")
+				.counter();
+		double before = notFoundErrors.count();
+
+		errorHandler.notFoundHandler(new NotFoundException("фильм"));
+
+		assertEquals(before + 1, notFoundErrors.count());
+
+		Counter dataAccessErrors = meterRegistry.get("filmorate.errors")
+				.tag("exception", "DataAccessException")
+				.counter();
+		double dataAccessBefore = dataAccessErrors.count();
+		DataAccessException error = assertThrows(DataAccessException.class,
+				() -> jdbcTemplate.queryForList("SELECT * FROM missing_table"));
+		errorHandler.dataAccessHandler(error);
+		assertEquals(dataAccessBefore + 1, dataAccessErrors.count());
+		assertNotNull(meterRegistry.find("http.server.requests.in.flight").gauge());
+	}
 }
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializedResponsesTest {
+
+	@Test
+	public void testEntriesAreReusedUntilTagChanges() {
+		SerializedResponses responses = new SerializedResponses(new ObjectMapper(), true, 10, false, 0);
+		assertNull(responses.getCached("genres", "\"1\"", false));
+
+		ResponseEntity<byte[]> first = responses.serialize("genres", "\"1\"", List.of(new Genre(1, "Комедия")), false);
+		assertEquals("[{\"id\":1,\"name\":\"Комедия\"}]", new String(first.getBody(), StandardCharsets.UTF_8));
+		assertEquals(MediaType.APPLICATION_JSON, first.getHeaders().getContentType());
+		assertEquals("\"1\"", first.getHeaders().getETag());
+		assertSame(first.getBody(), responses.getCached("genres", "\"1\"", false).getBody());
+		assertNull(responses.getCached("genres", "\"2\"", false));
+
+		SerializedResponses disabled = new SerializedResponses(new ObjectMapper(), false, 10, false, 0);
+		disabled.serialize("genres", "\"1\"", List.of(), false);
+		assertNull(disabled.getCached("genres", "\"1\"", false));
+	}
+
+	@Test
+	public void testGzipIsServedOnlyWhenAccepted() throws IOException {
+		SerializedResponses responses = new SerializedResponses(new ObjectMapper(), true, 10, true, 16);
+		ResponseEntity<byte[]> plain = responses.serialize("genres", "\"1\"",
+				List.of(new Genre(1, "Комедия"), new Genre(2, "Драма")), false);
+		ResponseEntity<byte[]> gzipped = responses.getCached("genres", "\"1\"", true);
+
+		assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, plain.getHeaders().getFirst(HttpHeaders.VARY));
+		assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+			assertArrayEquals(plain.getBody(), in.readAllBytes());
+		}
+
+		ResponseEntity<byte[]> small = responses.serialize("mpa/1", "\"1\"", List.of(), true);
+		assertNull(small.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertNull(small.getHeaders().getFirst(HttpHeaders.VARY));
+	}
+
+	@Test
+	public void testAcceptEncodingQualityValues() {
+		assertTrue(SerializedResponses.acceptsGzip("gzip"));
+		assertTrue(SerializedResponses.acceptsGzip("deflate, gzip;q=0.5, br"));
+		assertTrue(SerializedResponses.acceptsGzip("GZIP ; Q=1.0"));
+		assertTrue(SerializedResponses.acceptsGzip("*"));
+		assertTrue(SerializedResponses.acceptsGzip("x-gzip"));
+		assertFalse(SerializedResponses.acceptsGzip((String) null));
+		assertFalse(SerializedResponses.acceptsGzip(""));
+		assertFalse(SerializedResponses.acceptsGzip("gzip;q=0"));
+		assertFalse(SerializedResponses.acceptsGzip("gzip;q=0.000, deflate"));
+		assertFalse(SerializedResponses.acceptsGzip("*;q=1, gzip;q=0"));
+		assertFalse(SerializedResponses.acceptsGzip("identity, *;q=0"));
+		assertFalse(SerializedResponses.acceptsGzip("br, deflate"));
+		assertFalse(SerializedResponses.acceptsGzip("gzip;q=oops"));
+	}
+}
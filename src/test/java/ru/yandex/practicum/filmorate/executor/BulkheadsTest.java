@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadsTest {
+
+	@Test
+	public void testRejectsWhenFull() throws InterruptedException {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		Bulkheads bulkheads = bulkheads(registry, 1, 1, Duration.ZERO);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			CompletableFuture<Boolean> running = bulkheads.pointRead(() -> await(release));
+			CompletableFuture<Boolean> queued = bulkheads.pointRead(() -> await(release));
+			assertThrows(RejectedExecutionException.class, () -> bulkheads.pointRead(() -> true));
+			assertEquals(1, registry.get("filmorate.bulkhead.rejected").tag("bulkhead", "point-reads")
+					.counter().count());
+			assertEquals("write", bulkheads.write(() -> "write").join());
+
+			release.countDown();
+			assertTrue(running.join());
+			assertTrue(queued.join());
+		} finally {
+			release.countDown();
+			bulkheads.shutdown();
+		}
+	}
+
+	@Test
+	public void testLookupsRunInCallerWhenBusy() {
+		Bulkheads bulkheads = bulkheads(new SimpleMeterRegistry(), 1, 0, Duration.ZERO);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			bulkheads.lookup(() -> await(release));
+			Thread caller = Thread.currentThread();
+			assertEquals(caller, Bulkheads.await(bulkheads.lookup(Thread::currentThread)));
+			assertThrows(NotFoundException.class, () -> Bulkheads.await(bulkheads.lookup(() -> {
+				throw new NotFoundException("пользователь");
+			})));
+		} finally {
+			release.countDown();
+			bulkheads.shutdown();
+		}
+	}
+
+	@Test
+	public void testTimesOutReadsOnly() {
+		Bulkheads bulkheads = bulkheads(new SimpleMeterRegistry(), 1, 0, Duration.ofMillis(50));
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			CompletableFuture<Boolean> read = bulkheads.pointRead(() -> await(release));
+			CompletableFuture<Boolean> scan = bulkheads.listScan(() -> await(release));
+			CompletableFuture<Boolean> write = bulkheads.write(() -> await(release));
+			CompletableFuture<Boolean> batch = bulkheads.importBatch(() -> await(release));
+			for (CompletableFuture<Boolean> future : List.of(read, scan)) {
+				CompletionException e = assertThrows(CompletionException.class, future::join);
+				assertInstanceOf(TimeoutException.class, e.getCause());
+			}
+			assertFalse(write.isDone());
+			assertFalse(batch.isDone());
+			release.countDown();
+			assertTrue(write.join());
+			assertTrue(batch.join());
+		} finally {
+			release.countDown();
+			bulkheads.shutdown();
+		}
+	}
+
+	@Test
+	public void testImportsDoNotTakeListScanThreads() {
+		Bulkheads bulkheads = bulkheads(new SimpleMeterRegistry(), 1, 0, Duration.ZERO);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			CompletableFuture<Boolean> batch = bulkheads.importBatch(() -> await(release));
+			assertThrows(RejectedExecutionException.class, () -> bulkheads.importBatch(() -> true));
+			assertEquals("scan", bulkheads.listScan(() -> "scan").join());
+			release.countDown();
+			assertTrue(batch.join());
+		} finally {
+			release.countDown();
+			bulkheads.shutdown();
+		}
+	}
+
+	private static Bulkheads bulkheads(MeterRegistry registry, int threads, int queue, Duration timeout) {
+		return new Bulkheads(registry, threads, queue, timeout, threads, queue, timeout, threads, queue,
+				threads, threads, queue, threads, queue);
+	}
+
+	private static boolean await(CountDownLatch latch) {
+		try {
+			latch.await();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
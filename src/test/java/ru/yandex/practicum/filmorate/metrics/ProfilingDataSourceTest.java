@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilingDataSourceTest {
+
+	@Test
+	public void testClosingContextShutsDownWrappedPool() throws Exception {
+		HikariDataSource pool;
+		try (GenericApplicationContext context = new GenericApplicationContext()) {
+			context.registerBean(QueryProfiler.class, () -> new QueryProfiler(Duration.ofSeconds(1)));
+			context.registerBean(ProfilingDataSourcePostProcessor.class,
+					() -> new ProfilingDataSourcePostProcessor(context.getBeanProvider(QueryProfiler.class)));
+			context.registerBean("dataSource", HikariDataSource.class, () -> {
+				HikariDataSource dataSource = new HikariDataSource();
+				dataSource.setJdbcUrl("jdbc:h2:mem:profiling");
+				return dataSource;
+			});
+			context.refresh();
+			assertTrue(context.getBean("dataSource") instanceof ProfilingDataSource);
+			try (Connection connection = context.getBean(ProfilingDataSource.class).getConnection()) {
+				assertTrue(connection.isValid(1));
+			}
+			pool = (HikariDataSource) context.getBean(ProfilingDataSource.class).getTargetDataSource();
+			assertFalse(pool.isClosed());
+		}
+		assertTrue(pool.isClosed());
+	}
+
+	@Test
+	public void testTimesQueryUntilStatementIsClosed() throws Exception {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:statements");
+		QueryProfiler profiler = new QueryProfiler(Duration.ofSeconds(1));
+		ProfilingDataSource dataSource = new ProfilingDataSource(h2, profiler);
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 3)");
+			try (ResultSet rows = statement.executeQuery()) {
+				assertFalse(rows instanceof Proxy);
+				while (rows.next()) {
+					rows.getLong(1);
+				}
+			}
+			assertTrue(profiler.getStatistics().isEmpty());
+			statement.close();
+			assertEquals(1, profiler.getStatistics().get(0).getCalls());
+			assertEquals("SELECT X FROM SYSTEM_RANGE(?, ?)", profiler.getStatistics().get(0).getSql());
+		}
+	}
+}
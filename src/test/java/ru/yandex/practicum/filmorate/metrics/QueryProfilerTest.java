@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryProfilerTest {
+
+	@Test
+	public void testNormalize() {
+		assertEquals("SELECT * FROM film WHERE film_id = ? AND name = ?",
+				QueryProfiler.normalize("SELECT *\n  FROM film WHERE film_id = 15 AND name = 'it''s'"));
+		assertEquals("ALTER TABLE film ALTER COLUMN film_id RESTART WITH ?",
+				QueryProfiler.normalize("ALTER TABLE film ALTER COLUMN film_id RESTART WITH 10001 "));
+		assertEquals("select f2.id from t1 limit ?", QueryProfiler.normalize("select f2.id from t1 limit 10"));
+	}
+
+	@Test
+	public void testCapsNormalizedStatements() {
+		QueryProfiler profiler = new QueryProfiler(Duration.ofSeconds(1));
+		for (int i = 0; i < QueryProfiler.MAX_NORMALIZED_STATEMENTS + 10; i++) {
+			profiler.record(profiler.statisticsFor("SELECT * FROM t" + i), 1, false);
+		}
+		assertEquals(QueryProfiler.MAX_NORMALIZED_STATEMENTS + 1, profiler.getStatistics().size());
+		assertSame(profiler.statisticsFor("SELECT * FROM t0"), profiler.statisticsFor("SELECT * FROM t0"));
+		assertEquals(QueryProfiler.OTHER, profiler.statisticsFor("SELECT * FROM t_new").sql);
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		long p50 = histogram.percentileMicros(50);
+		long p99 = histogram.percentileMicros(99);
+		assertTrue(p50 >= 50_000 && p50 < 50_000 * 1.125, String.valueOf(p50));
+		assertTrue(p99 >= 99_000 && p99 < 99_000 * 1.125, String.valueOf(p99));
+		for (long micros = 0; micros < 1_000_000; micros += 7) {
+			int index = LatencyHistogram.indexOf(micros);
+			assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+			assertTrue(index == 0 || micros > LatencyHistogram.upperBoundOf(index - 1));
+		}
+	}
+}
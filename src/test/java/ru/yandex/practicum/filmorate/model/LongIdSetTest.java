@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JsonTest
+class LongIdSetTest {
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Test
+	public void testAddRemoveKeepsIdsSorted() {
+		LongIdSet set = new LongIdSet();
+		assertTrue(set.addId(5));
+		assertTrue(set.addId(1));
+		assertTrue(set.add(3L));
+		assertFalse(set.addId(3));
+		assertEquals(List.of(1L, 3L, 5L), new ArrayList<>(set));
+		assertTrue(set.containsId(5));
+		assertFalse(set.contains(5));
+		assertTrue(set.removeId(3));
+		assertFalse(set.remove(3L));
+		assertArrayEquals(new long[]{1, 5}, set.toLongArray());
+
+		Iterator<Long> iterator = set.iterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals(Set.of(5L), set);
+		assertEquals(Set.of(5L).hashCode(), set.hashCode());
+	}
+
+	@Test
+	public void testIntersect() {
+		LongIdSet small = LongIdSet.of(2, 4, 6, 8);
+		LongIdSet big = new LongIdSet();
+		for (long id = 0; id < 100; id += 3) {
+			big.addId(id);
+		}
+		assertEquals(LongIdSet.of(6), small.intersect(big));
+		assertEquals(LongIdSet.of(6), big.intersect(small));
+		assertEquals(1, small.intersectionSize(big));
+		assertEquals(1, big.intersectionSize(small));
+		assertEquals(2, LongIdSet.of(1, 2, 3).intersectionSize(LongIdSet.of(3, 2, 9)));
+		assertEquals(new HashSet<>(List.of(2L, 3L)), LongIdSet.copyOf(Set.of(1L, 2L, 3L))
+				.intersect(LongIdSet.copyOf(List.of(3L, 2L, 2L))));
+	}
+
+	@Test
+	public void testJsonRoundTrip() throws Exception {
+		Film film = Film.builder()
+				.name("film")
+				.releaseDate(LocalDate.of(2000, 1, 1))
+				.likes(LongIdSet.of(3, 1, 2))
+				.build();
+
+		String json = mapper.writeValueAsString(film);
+		assertTrue(json.contains("\"likes\":[1,2,3]"));
+
+		Film restored = mapper.readValue(json, Film.class);
+		assertTrue(restored.getLikes() instanceof LongIdSet);
+		assertEquals(Set.of(1L, 2L, 3L), restored.getLikes());
+	}
+}
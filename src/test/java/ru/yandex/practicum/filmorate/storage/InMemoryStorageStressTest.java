@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class InMemoryStorageStressTest {
+	private static final int FILMS = 50;
+	private static final int USERS_PER_THREAD = 200;
+	private static final int OPERATIONS_PER_THREAD = 50_000;
+
+	@Test
+	public void testConcurrentLikesAndFriendsKeepInvariants() throws Exception {
+		int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			runStress(threads);
+		}
+	}
+
+	private void runStress(int threads) throws Exception {
+		InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+		InMemoryUserStorage userStorage = new InMemoryUserStorage();
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Map<Long, Set<Long>>>> results = new ArrayList<>();
+
+		for (int i = 0; i < FILMS; i++) {
+			filmStorage.addFilm(makeFilm(i));
+		}
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			results.add(executor.submit(() -> {
+				List<Long> userIds = new ArrayList<>();
+				for (int i = 0; i < USERS_PER_THREAD; i++) {
+					userIds.add(userStorage.addUser(makeUser(thread, i)).getId());
+				}
+				start.await();
+				return mutate(filmStorage, userStorage, userIds, new Random(thread));
+			}));
+		}
+
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicLong pages = new AtomicLong();
+		Future<?> reader = executor.submit(() -> {
+			start.await();
+			while (!done.get()) {
+				List<Film> page = filmStorage.getFilms(0, FILMS);
+				assertEquals(FILMS, page.size());
+				for (int i = 0; i < page.size(); i++) {
+					assertEquals(i + 1, page.get(i).getId());
+				}
+				userStorage.getUsers(0, USERS_PER_THREAD);
+				pages.incrementAndGet();
+			}
+			return null;
+		});
+
+		long startedAt = System.nanoTime();
+		start.countDown();
+		Map<Long, Set<Long>> expectedLikes = new HashMap<>();
+		for (Future<Map<Long, Set<Long>>> result : results) {
+			result.get().forEach((filmId, userIds) ->
+					expectedLikes.computeIfAbsent(filmId, id -> new HashSet<>()).addAll(userIds));
+		}
+		long elapsed = System.nanoTime() - startedAt;
+		done.set(true);
+		reader.get();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(pages.get() > 0);
+
+		List<Film> films = filmStorage.getAllFilms();
+		List<User> users = userStorage.getAllUsers();
+		assertEquals(FILMS, films.size());
+		assertEquals(threads * USERS_PER_THREAD, users.size());
+		assertEquals(users.size(), users.stream().map(User::getId).distinct().count());
+		for (Film film : films) {
+			assertEquals(expectedLikes.getOrDefault(film.getId(), Set.of()), film.getLikes());
+		}
+		List<Long> expectedRating = films.stream()
+				.sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+						.thenComparingLong(Film::getId))
+				.map(Film::getId)
+				.collect(Collectors.toList());
+		List<Long> rating = filmStorage.getPopularFilms(FILMS).stream()
+				.map(Film::getId)
+				.collect(Collectors.toList());
+		assertEquals(expectedRating, rating);
+
+		long operations = (long) threads * OPERATIONS_PER_THREAD;
+		log.info("Потоков: {}, операций в секунду: {}, страниц прочитано параллельно: {}",
+				threads, operations * TimeUnit.SECONDS.toNanos(1) / elapsed, pages.get());
+	}
+
+	private Map<Long, Set<Long>> mutate(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+										List<Long> userIds, Random random) {
+		Map<Long, Set<Long>> likes = new HashMap<>();
+		for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+			long filmId = 1 + random.nextInt(FILMS);
+			long userId = userIds.get(random.nextInt(userIds.size()));
+			long friendId = userIds.get(random.nextInt(userIds.size()));
+			Set<Long> filmLikes = likes.computeIfAbsent(filmId, id -> new HashSet<>());
+			switch (random.nextInt(5)) {
+				case 0:
+				case 1:
+					assertEquals(filmLikes.add(userId), filmStorage.addLike(filmId, userId));
+					break;
+				case 2:
+					assertEquals(filmLikes.remove(userId), filmStorage.deleteLike(filmId, userId));
+					break;
+				case 3:
+					userStorage.addFriend(userId, friendId);
+					assertTrue(userStorage.getUserById(userId).getFriends().contains(friendId));
+					break;
+				default:
+					userStorage.deleteFriend(userId, friendId);
+					assertFalse(userStorage.getUserById(userId).getFriends().contains(friendId));
+			}
+		}
+		return likes;
+	}
+
+	private Film makeFilm(int index) {
+		return Film.builder()
+				.name("film" + index)
+				.description("description" + index)
+				.releaseDate(LocalDate.of(2000, 1, 1))
+				.duration(90)
+				.mpa(new Mpa(1, "G"))
+				.build();
+	}
+
+	private User makeUser(int thread, int index) {
+		return User.builder()
+				.email("user" + thread + "_" + index + "@mail.com")
+				.login("user" + thread + "_" + index)
+				.name("user" + thread + "_" + index)
+				.birthday(LocalDate.of(1990, 1, 1))
+				.build();
+	}
+}
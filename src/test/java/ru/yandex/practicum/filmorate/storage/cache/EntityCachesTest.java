@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCachesTest {
+
+	@Test
+	public void testInvalidationReloadsAndStatisticsCount() {
+		EntityCaches caches = new EntityCaches(10, Duration.ofMinutes(10), 10, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals("film1", caches.getFilm(1L, id -> makeFilm(id, loads)).getName());
+		assertEquals("film1", caches.getFilm(1L, id -> makeFilm(id, loads)).getName());
+		assertEquals(1, loads.get());
+
+		caches.films().invalidate(1L);
+		caches.getFilm(1L, id -> makeFilm(id, loads));
+		assertEquals(2, loads.get());
+		caches.getUser(1L, id -> User.builder().id(id).login("user").friends(new LongIdSet()).build());
+		caches.invalidateAll();
+		caches.getFilm(1L, id -> makeFilm(id, loads));
+		assertEquals(3, loads.get());
+
+		List<CacheStatistics> statistics = caches.getStatistics();
+		CacheStatistics films = statistics.get(0);
+		assertEquals("films", films.getName());
+		assertEquals(1, films.getHitCount());
+		assertEquals(3, films.getMissCount());
+		assertEquals(0.25, films.getHitRate(), 1e-9);
+		assertEquals(1, films.getSize());
+		CacheStatistics users = statistics.get(1);
+		assertEquals("users", users.getName());
+		assertEquals(0, users.getHitCount());
+		assertEquals(1, users.getMissCount());
+		assertEquals(0, users.getSize());
+	}
+
+	@Test
+	public void testCachedEntitiesAreNotSharedMutably() {
+		EntityCaches caches = new EntityCaches(10, Duration.ofMinutes(10), 10, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		Film film = caches.getFilm(1L, id -> makeFilm(id, loads));
+		film.setName("changed");
+		assertThrows(UnsupportedOperationException.class, () -> film.getLikes().add(100L));
+		assertThrows(UnsupportedOperationException.class, () -> film.getGenres().clear());
+		Map<Long, Film> present = caches.getAllPresentFilms(List.of(1L, 2L));
+		assertEquals(1, present.size());
+		present.get(1L).setDuration(1);
+
+		Film cached = caches.getFilm(1L, id -> makeFilm(id, loads));
+		assertEquals("film1", cached.getName());
+		assertEquals(120, cached.getDuration());
+		assertEquals(LongIdSet.of(7, 8), cached.getLikes());
+		assertNotSame(film, cached);
+
+		User user = caches.getUser(1L, id -> User.builder().id(id).login("user").friends(LongIdSet.of(2)).build());
+		user.setLogin("changed");
+		assertThrows(UnsupportedOperationException.class, () -> user.getFriends().remove(2L));
+		assertEquals("user", caches.getAllPresentUsers(List.of(1L)).get(1L).getLogin());
+	}
+
+	private static Film makeFilm(long id, AtomicInteger loads) {
+		loads.incrementAndGet();
+		return Film.builder()
+				.id(id)
+				.name("film" + id)
+				.duration(120)
+				.likes(LongIdSet.of(7, 8))
+				.genres(new TreeSet<>(List.of(new Genre(1, "Комедия"))))
+				.build();
+	}
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmSearchIndexTest {
+	private static final Set<FilmSearchIndex.Field> ALL_FIELDS = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+	@Test
+	public void testTokenizeCyrillic() {
+		assertEquals(List.of("ежик", "в", "тумане", "1975"), FilmSearchIndex.tokenize("«Ёжик в ТУМАНЕ» (1975)"));
+		assertEquals(List.of("человек", "паук"), FilmSearchIndex.tokenize("Человек-паук, человек"));
+		assertEquals(List.of(), FilmSearchIndex.tokenize(" -- "));
+	}
+
+	@Test
+	public void testRanksByRelevanceThenLikes() {
+		InMemoryFilmStorage storage = new InMemoryFilmStorage();
+		long matrix = storage.addFilm(makeFilm("Матрица", "Хакер узнаёт правду о мире")).getId();
+		long reloaded = storage.addFilm(makeFilm("Матрица: Перезагрузка", "Продолжение")).getId();
+		long documentary = storage.addFilm(makeFilm("Как снимали", "Фильм о съёмках матрицы")).getId();
+		long other = storage.addFilm(makeFilm("Солярис", "Станция над океаном")).getId();
+		FilmSearchIndex index = new FilmSearchIndex();
+		new FilmIndexes(storage, List.of(index)).rebuild();
+		index.addLikes(reloaded, 5);
+
+		assertEquals(List.of(reloaded, matrix, documentary), index.search("матр", ALL_FIELDS, 10));
+		assertEquals(List.of(reloaded, matrix), index.search("матрица", ALL_FIELDS, 10));
+		assertEquals(List.of(reloaded), index.search("матрица пере", ALL_FIELDS, 10));
+		assertEquals(List.of(documentary), index.search("съемках", ALL_FIELDS, 10));
+		assertEquals(List.of(reloaded, matrix), index.search("матр", EnumSet.of(FilmSearchIndex.Field.NAME), 10));
+		assertEquals(List.of(reloaded), index.search("матр", ALL_FIELDS, 1));
+		assertEquals(List.of(), index.search("матрица солярис", ALL_FIELDS, 10));
+
+		Film renamed = storage.getFilmById(other);
+		renamed.setName("Матрица Тарковского");
+		index.put(storage.updateFilm(renamed));
+		assertEquals(List.of(), index.search("солярис", ALL_FIELDS, 10));
+		assertEquals(List.of(other), index.search("тарк", ALL_FIELDS, 10));
+		assertEquals(4, index.size());
+	}
+
+	@Test
+	public void testAppliesUpdatesAfterCommit() {
+		InMemoryFilmStorage storage = new InMemoryFilmStorage();
+		FilmSearchIndex index = new FilmSearchIndex();
+		FilmIndexes indexes = new FilmIndexes(storage, List.of(index));
+		indexes.rebuild();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			indexes.put(storage.addFilm(makeFilm("Солярис", "Станция над океаном")));
+			assertEquals(List.of(), index.search("солярис", ALL_FIELDS, 10));
+			TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(0, index.size());
+
+		TransactionSynchronizationManager.initSynchronization();
+		long stalker;
+		try {
+			stalker = storage.addFilm(makeFilm("Сталкер", "Зона")).getId();
+			indexes.put(storage.getFilmById(stalker));
+			TransactionSynchronizationUtils.triggerAfterCommit();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(List.of(stalker), index.search("сталкер", ALL_FIELDS, 10));
+	}
+
+	@Test
+	public void testReplaysUpdatesMadeDuringRebuild() {
+		CountDownLatch scanning = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean paused = new AtomicBoolean();
+		InMemoryFilmStorage storage = new InMemoryFilmStorage() {
+			@Override
+			public List<Film> getFilms(long after, int limit) {
+				List<Film> page = super.getFilms(after, limit);
+				if (paused.get()) {
+					scanning.countDown();
+					await(release);
+				}
+				return page;
+			}
+		};
+		long solaris = storage.addFilm(makeFilm("Солярис", "Станция над океаном")).getId();
+		FilmSearchIndex index = new FilmSearchIndex();
+		FilmIndexes indexes = new FilmIndexes(storage, List.of(index));
+		indexes.rebuild();
+
+		paused.set(true);
+		CompletableFuture<Void> rebuild = CompletableFuture.runAsync(indexes::rebuild);
+		try {
+			await(scanning);
+			long stalker = storage.addFilm(makeFilm("Сталкер", "Зона")).getId();
+			indexes.put(storage.getFilmById(stalker));
+			Film renamed = storage.getFilmById(solaris);
+			renamed.setName("Зеркало");
+			indexes.update(storage.updateFilm(renamed));
+			assertEquals(List.of(stalker), index.search("сталкер", ALL_FIELDS, 10));
+			release.countDown();
+			rebuild.join();
+
+			assertEquals(List.of(stalker), index.search("сталкер", ALL_FIELDS, 10));
+			assertEquals(List.of(solaris), index.search("зеркало", ALL_FIELDS, 10));
+			assertEquals(List.of(), index.search("солярис", ALL_FIELDS, 10));
+			assertEquals(2, index.size());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Film makeFilm(String name, String description) {
+		return Film.builder()
+				.name(name)
+				.description(description)
+				.releaseDate(LocalDate.of(2000, 1, 1))
+				.duration(120)
+				.mpa(new Mpa(1, "G"))
+				.build();
+	}
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityIndexTest {
+
+	@Test
+	public void testFiltersCombineAndFollowLikes() {
+		PopularityIndex index = new PopularityIndex();
+		index.put(makeFilm(1, 2022, 1, Set.of(1, 2), 5));
+		index.put(makeFilm(2, 2022, 3, Set.of(1), 7));
+		index.put(makeFilm(3, 2021, 3, Set.of(2), 9));
+		index.put(makeFilm(4, 2022, 3, Set.of(), 0));
+
+		assertEquals(List.of(2L, 1L), index.getTop(10, 1, null, null));
+		assertEquals(List.of(3L, 2L, 4L), index.getTop(10, null, 3, null));
+		assertEquals(List.of(2L, 1L, 4L), index.getTop(10, null, null, 2022));
+		assertEquals(List.of(2L, 4L), index.getTop(10, null, 3, 2022));
+		assertEquals(List.of(1L), index.getTop(10, 2, null, 2022));
+		assertEquals(List.of(2L), index.getTop(1, null, null, 2022));
+		assertEquals(List.of(), index.getTop(10, 5, null, null));
+		assertEquals(List.of(), index.getTop(10, 1, 3, 2021));
+		assertEquals(List.of(), index.getTop(10, null, null, 2022 + 0x10000));
+		assertEquals(List.of(), index.getTop(10, null, 3 + 0x10000, null));
+
+		index.addLikes(1, 3);
+		assertEquals(List.of(1L, 2L), index.getTop(10, 1, null, null));
+		index.setLikes(Map.of(4L, 10));
+		assertEquals(List.of(4L, 2L), index.getTop(10, null, 3, 2022));
+
+		index.put(makeFilm(1, 2021, 3, Set.of(3), 8));
+		assertEquals(List.of(2L), index.getTop(10, 1, null, null));
+		assertEquals(List.of(3L, 1L), index.getTop(10, null, null, 2021));
+		assertEquals(List.of(1L), index.getTop(10, 3, 3, 2021));
+	}
+
+	@Test
+	public void testUpdateTakesLikesFromStorage() {
+		InMemoryFilmStorage storage = new InMemoryFilmStorage();
+		PopularityIndex index = new PopularityIndex();
+		FilmIndexes indexes = new FilmIndexes(storage, List.of(index));
+		long first = storage.addFilm(makeFilm(0, 2022, 1, Set.of(), 0)).getId();
+		long second = storage.addFilm(makeFilm(0, 2022, 1, Set.of(), 0)).getId();
+		indexes.rebuild();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Film renamed = storage.getFilmById(second);
+			renamed.setName("renamed");
+			indexes.update(storage.updateFilm(renamed));
+			CompletableFuture.runAsync(() -> {
+				storage.addLike(second, 1L);
+				indexes.addLike(second, 1L);
+			}).join();
+			TransactionSynchronizationUtils.triggerAfterCommit();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(List.of(second, first), index.getTop(10, null, 1, null));
+	}
+
+	private static Film makeFilm(long id, int year, int mpaId, Set<Integer> genreIds, int likes) {
+		LongIdSet likeIds = new LongIdSet();
+		for (long userId = 1; userId <= likes; userId++) {
+			likeIds.addId(userId);
+		}
+		Film film = Film.builder()
+				.id(id)
+				.name("film" + id)
+				.releaseDate(LocalDate.of(year, 1, 1))
+				.duration(90)
+				.mpa(new Mpa(mpaId, null))
+				.likes(likeIds)
+				.build();
+		film.setGenres(new TreeSet<>());
+		for (Integer genreId : genreIds) {
+			film.getGenres().add(new Genre(genreId, null));
+		}
+		return film;
+	}
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarFilmsIndexTest {
+
+	@Test
+	public void testCoLikedFilmsAreSimilar() {
+		SimilarFilmsIndex index = new SimilarFilmsIndex(20, 2, 100);
+		FilmIndex.Loader loader = index.newLoader();
+		loader.add(makeFilm(1, 1, 2, 3));
+		loader.add(makeFilm(2, 1, 2));
+		loader.add(makeFilm(3, 3));
+		loader.add(makeFilm(4, 4));
+		loader.add(makeFilm(5));
+		loader.commit();
+
+		assertEquals(List.of(2L, 3L), index.getSimilar(1, 10));
+		assertEquals(List.of(2L), index.getSimilar(1, 1));
+		assertEquals(List.of(1L), index.getSimilar(2, 10));
+		assertEquals(List.of(1L), index.getSimilar(3, 10));
+		assertEquals(List.of(), index.getSimilar(4, 10));
+		assertEquals(List.of(), index.getSimilar(5, 10));
+		assertEquals(List.of(2L), index.recommend(3, 10));
+		assertEquals(List.of(), index.recommend(4, 10));
+		assertEquals(List.of(), index.recommend(9, 10));
+	}
+
+	@Test
+	public void testIncrementalUpdatesMatchRebuild() {
+		SimilarFilmsIndex index = new SimilarFilmsIndex(20, 1, 100);
+		FilmIndex.Loader loader = index.newLoader();
+		loader.add(makeFilm(1, 1, 2, 3));
+		loader.add(makeFilm(2, 1, 2));
+		loader.add(makeFilm(3, 3));
+		loader.add(makeFilm(4, 4));
+		loader.commit();
+
+		index.addLike(3, 2);
+		index.scheduleRefresh().join();
+		assertEquals(List.of(2L, 3L), index.getSimilar(1, 10));
+		assertEquals(List.of(1L, 3L), index.getSimilar(2, 10));
+		assertEquals(List.of(1L, 2L), index.getSimilar(3, 10));
+		assertEquals(List.of(3L), index.recommend(1, 10));
+
+		index.deleteLike(1, 1);
+		index.scheduleRefresh().join();
+		assertEquals(List.of(3L, 2L), index.getSimilar(1, 10));
+		index.put(makeFilm(4, 1, 4));
+		index.scheduleRefresh().join();
+		assertEquals(List.of(2L), index.getSimilar(4, 10));
+
+		List<List<Long>> incremental = List.of(index.getSimilar(1, 10), index.getSimilar(2, 10),
+				index.getSimilar(3, 10), index.getSimilar(4, 10));
+		index.rebuild(2);
+		assertEquals(incremental, List.of(index.getSimilar(1, 10), index.getSimilar(2, 10),
+				index.getSimilar(3, 10), index.getSimilar(4, 10)));
+
+		index.put(makeFilm(4));
+		index.scheduleRefresh().join();
+		assertEquals(List.of(), index.getSimilar(4, 10));
+		assertFalse(index.getSimilar(2, 10).contains(4L));
+		index.stop();
+	}
+
+	@Test
+	public void testDroppedNeighborIsReplaced() {
+		SimilarFilmsIndex index = new SimilarFilmsIndex(1, 1, 100);
+		FilmIndex.Loader loader = index.newLoader();
+		loader.add(makeFilm(1, 1, 2));
+		loader.add(makeFilm(2, 1, 2));
+		loader.add(makeFilm(3, 1));
+		loader.commit();
+		assertEquals(List.of(2L), index.getSimilar(1, 10));
+		assertEquals(List.of(1L), index.getSimilar(3, 10));
+
+		index.deleteLike(2, 1);
+		index.deleteLike(2, 2);
+		index.scheduleRefresh().join();
+		assertEquals(List.of(3L), index.getSimilar(1, 10));
+		assertEquals(List.of(), index.getSimilar(2, 10));
+
+		index.addLike(3, 2);
+		index.scheduleRefresh().join();
+		assertEquals(List.of(3L), index.getSimilar(1, 10));
+		assertEquals(List.of(1L), index.getSimilar(3, 10));
+		index.stop();
+	}
+
+	@Test
+	public void testRebuildsAfterThreshold() {
+		SimilarFilmsIndex index = new SimilarFilmsIndex(1, 1, 2);
+		FilmIndex.Loader loader = index.newLoader();
+		loader.add(makeFilm(1, 1, 2));
+		loader.add(makeFilm(2, 1, 2));
+		loader.add(makeFilm(3, 3, 4));
+		loader.add(makeFilm(4, 3));
+		loader.commit();
+		assertEquals(List.of(4L), index.getSimilar(3, 10));
+
+		index.addLike(2, 3);
+		index.addLike(2, 4);
+		index.scheduleRefresh().join();
+		assertEquals(List.of(2L), index.getSimilar(3, 10));
+		List<List<Long>> refreshed = List.of(index.getSimilar(1, 10), index.getSimilar(2, 10),
+				index.getSimilar(3, 10), index.getSimilar(4, 10));
+		index.rebuild(1);
+		assertEquals(refreshed, List.of(index.getSimilar(1, 10), index.getSimilar(2, 10),
+				index.getSimilar(3, 10), index.getSimilar(4, 10)));
+		index.stop();
+	}
+
+	@Test
+	public void testImportedLikesAreAppliedByRebuild() {
+		SimilarFilmsIndex index = new SimilarFilmsIndex(20, 1, 100);
+		FilmIndex.Loader loader = index.newLoader();
+		loader.add(makeFilm(1, 1, 2, 3));
+		loader.add(makeFilm(2, 1, 2));
+		loader.add(makeFilm(3, 3));
+		loader.add(makeFilm(4, 4));
+		loader.commit();
+
+		index.importLikes(List.of(new Like(3L, 2L), new Like(1L, 1L)), Map.of());
+		index.scheduleRebuild().join();
+		assertEquals(List.of(2L, 3L), index.getSimilar(1, 10));
+		assertEquals(List.of(1L, 3L), index.getSimilar(2, 10));
+		assertEquals(List.of(1L, 2L), index.getSimilar(3, 10));
+		assertEquals(List.of(3L), index.recommend(1, 10));
+		index.stop();
+	}
+
+	private static Film makeFilm(long id, long... userIds) {
+		return Film.builder()
+				.id(id)
+				.name("film" + id)
+				.likes(LongIdSet.of(userIds))
+				.build();
+	}
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendGraphTest {
+
+	@Test
+	public void testSuggestsByCommonFriendsThenFollowers() {
+		InMemoryUserStorage storage = new InMemoryUserStorage();
+		for (int i = 1; i <= 8; i++) {
+			storage.addUser(makeUser(i));
+		}
+		storage.addFriend(1L, 2L);
+		storage.addFriend(1L, 3L);
+		storage.addFriend(4L, 2L);
+		storage.addFriend(4L, 3L);
+		storage.addFriend(5L, 2L);
+		storage.addFriend(6L, 1L);
+		storage.addFriend(2L, 5L);
+		FriendGraph graph = new FriendGraph(storage, 100);
+		graph.rebuild();
+
+		assertEquals(List.of(4L, 5L, 6L), graph.suggest(1, 10));
+		assertEquals(List.of(4L), graph.suggest(1, 1));
+		assertEquals(List.of(1L, 5L), graph.suggest(4, 10));
+		assertEquals(List.of(), graph.suggest(7, 10));
+
+		graph.addFriendships(List.of(new Friendship(7L, 3L), new Friendship(8L, 3L), new Friendship(8L, 1L)));
+		assertEquals(List.of(4L, 8L, 5L, 7L, 6L), graph.suggest(1, 10));
+
+		graph.addFriend(1, 4);
+		graph.deleteFriend(8, 1);
+		assertEquals(List.of(5L, 7L, 8L, 6L), graph.suggest(1, 10));
+
+		User user = storage.getUserById(1L);
+		user.setFriends(LongIdSet.of(3));
+		graph.put(user);
+		assertEquals(List.of(4L, 7L, 8L, 6L), graph.suggest(1, 10));
+	}
+
+	@Test
+	public void testStopsAtVisitedEdgesLimit() {
+		InMemoryUserStorage storage = new InMemoryUserStorage();
+		for (int i = 1; i <= 5; i++) {
+			storage.addUser(makeUser(i));
+		}
+		storage.addFriend(1L, 2L);
+		storage.addFriend(1L, 3L);
+		storage.addFriend(4L, 2L);
+		storage.addFriend(5L, 2L);
+		storage.addFriend(5L, 3L);
+		FriendGraph graph = new FriendGraph(storage, 2);
+		graph.rebuild();
+
+		assertEquals(List.of(5L), graph.suggest(1, 10));
+	}
+
+	@Test
+	public void testReplaysChangesMadeDuringRebuild() {
+		CountDownLatch scanning = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean paused = new AtomicBoolean();
+		InMemoryUserStorage storage = new InMemoryUserStorage() {
+			@Override
+			public List<User> getUsers(long after, int limit) {
+				List<User> page = super.getUsers(after, limit);
+				if (paused.get()) {
+					scanning.countDown();
+					await(release);
+				}
+				return page;
+			}
+		};
+		for (int i = 1; i <= 4; i++) {
+			storage.addUser(makeUser(i));
+		}
+		storage.addFriend(1L, 2L);
+		storage.addFriend(3L, 4L);
+		FriendGraph graph = new FriendGraph(storage, 100);
+		graph.rebuild();
+
+		paused.set(true);
+		CompletableFuture<Void> rebuild = CompletableFuture.runAsync(graph::rebuild);
+		try {
+			await(scanning);
+			storage.addFriend(3L, 2L);
+			graph.addFriend(3, 2);
+			storage.deleteFriend(3L, 4L);
+			graph.deleteFriend(3, 4);
+			assertEquals(List.of(3L), graph.suggest(1, 10));
+			release.countDown();
+			rebuild.join();
+
+			assertEquals(List.of(3L), graph.suggest(1, 10));
+			assertEquals(List.of(), graph.suggest(4, 10));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static User makeUser(int i) {
+		return User.builder()
+				.login("login" + i)
+				.email("user" + i + "@mail.com")
+				.birthday(LocalDate.of(1990, 1, 1))
+				.build();
+	}
+}